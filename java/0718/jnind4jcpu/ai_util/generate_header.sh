@@ -12,10 +12,7 @@ CLASS_NAME=CPUInfo
 mkdir -p $BUILD_DIR/$PACKAGE_PATH
 mkdir -p $NATIVE_DIR/$PACKAGE_PATH
 
-# Compile the Java class
-javac -d $BUILD_DIR $SRC_DIR/$PACKAGE_PATH/$CLASS_NAME.java
+# Compile the Java classes and generate a JNI header for each class with native methods
+javac -h $NATIVE_DIR -d $BUILD_DIR $SRC_DIR/$PACKAGE_PATH/*.java
 
-# Generate the JNI header file
-javac -h $NATIVE_DIR -d $BUILD_DIR $SRC_DIR/$PACKAGE_PATH/$CLASS_NAME.java
-
-echo "JNI header file generated at $NATIVE_DIR/com_example_jni_$CLASS_NAME.h"
+echo "JNI header files generated in $NATIVE_DIR"
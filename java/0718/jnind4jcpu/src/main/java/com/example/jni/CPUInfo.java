@@ -1,14 +1,96 @@
 package com.example.jni;
 
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+
 public class CPUInfo {
     static {
         System.loadLibrary("cpuinfo");
     }
 
+    private static final Cleaner CLEANER = Cleaner.create();
+
     // Native method declaration
     public native int getPageSize();
     public native int getCPUCores();
     public native String getCPUModel();
+    private static native SystemTopology readSystemTopology();
+    private static native void setAffinity(int[] cpus);
+    private static native void setPreferredNode(int node);
+    private static native ByteBuffer mapOnNode(long size, int node);
+    private static native long address(ByteBuffer buffer);
+    private static native void unmap(long address, long size);
+
+    private static final class TopologyHolder {
+        static final SystemTopology TOPOLOGY = readSystemTopology();
+    }
+
+    /**
+     * NUMA nodes, caches, huge pages, THP modes and kernel release, read by one native call on
+     * first use and cached for the life of the JVM
+     */
+    public static SystemTopology getSystemTopology() {
+        return TopologyHolder.TOPOLOGY;
+    }
+
+    /**
+     * Restricts the calling thread to one CPU
+     *
+     * @throws IllegalArgumentException if the CPU is not online or not in this process's cpuset
+     */
+    public static void pinCurrentThread(int cpu) {
+        if (cpu < 0) {
+            throw new IllegalArgumentException("cpu " + cpu);
+        }
+        setAffinity(new int[] {cpu});
+    }
+
+    /**
+     * Runs the calling thread on the node's CPUs and makes the node its preferred source of memory
+     *
+     * Pages this thread touches first from now on (native allocations, fresh heap pages) come
+     * from the node while it has free memory, then from the nearest other node. Memory that is
+     * already resident does not move.
+     *
+     * @throws IllegalArgumentException if there is no such node
+     */
+    public static void bindToNode(int node) {
+        setAffinity(numaNode(node).cpus().stream().mapToInt(Integer::intValue).toArray());
+        setPreferredNode(node);
+    }
+
+    /**
+     * A page-aligned direct buffer whose memory can only come from the given node
+     *
+     * The memory is mapped with mmap and bound with mbind, so it stays on the node whichever
+     * thread touches it first. It is unmapped once the buffer, and every slice or duplicate of
+     * it, is unreachable.
+     *
+     * @throws IllegalArgumentException if there is no such node
+     * @throws OutOfMemoryError if the mapping fails
+     */
+    public static ByteBuffer allocateOnNode(int capacity, int node) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity " + capacity);
+        }
+        numaNode(node);
+        long pageSize = getSystemTopology().pageSize();
+        long size = Math.max(pageSize, (capacity + pageSize - 1) / pageSize * pageSize);
+        ByteBuffer mapped = mapOnNode(size, node);
+        long address = address(mapped);
+        // Every slice and duplicate, including the one returned, keeps the mapped buffer reachable
+        CLEANER.register(mapped, () -> unmap(address, size));
+        return mapped.limit(capacity).slice();
+    }
+
+    private static SystemTopology.NumaNode numaNode(int node) {
+        for (SystemTopology.NumaNode n : getSystemTopology().numaNodes()) {
+            if (n.id() == node) {
+                return n;
+            }
+        }
+        throw new IllegalArgumentException("No NUMA node " + node);
+    }
 
     // Test method
     public static void main(String[] args) {
@@ -16,5 +98,47 @@ public class CPUInfo {
         System.out.println("Page Size: " + info.getPageSize() + " bytes");
         System.out.println("CPU Cores: " + info.getCPUCores());
         System.out.println("CPU Model: " + info.getCPUModel());
+
+        SystemTopology topology = getSystemTopology();
+        System.out.println("Kernel: " + topology.kernelRelease() + " (" + topology.machine()
+                + ", flavour '" + topology.kernelFlavour() + "')");
+        topology.numaNodes().forEach(node -> System.out.println("  " + node));
+        topology.caches().forEach(cache -> System.out.println("  " + cache));
+        topology.hugePageSizes().forEach(pages -> System.out.println("  " + pages));
+        System.out.println("THP enabled: " + topology.thpEnabled() + ", defrag: " + topology.thpDefrag());
+
+        // A thread bound to the first node fills a buffer whose pages come from that node
+        int node = topology.numaNodes().get(0).id();
+        Thread worker = NumaThreadFactory.forNode(node).newThread(() -> {
+            ByteBuffer buffer = allocateOnNode(16 << 20, node);
+            while (buffer.hasRemaining()) {
+                buffer.put((byte) 1);
+            }
+            System.out.println(Thread.currentThread().getName() + ": filled " + buffer.capacity()
+                    + " bytes on node " + node);
+        });
+        worker.start();
+        try {
+            worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // First touch of 64 MB, one write per page: faults scale with the number of pages
+        int pageSize = info.getPageSize();
+        MemorySampler sampler = MemorySampler.open();
+        MemorySampler.Sample before = sampler.sample();
+        PerfCounters.Counts counts = PerfCounters.measure(() -> {
+            byte[] block = new byte[64 << 20];
+            for (int i = 0; i < block.length; i += pageSize) {
+                block[i] = 1;
+            }
+        });
+        System.out.println("Counters while touching 64 MB:");
+        System.out.print(counts);
+        MemorySampler.Sample after = sampler.sample();
+        sampler.close();
+        System.out.println("Memory before: " + before);
+        System.out.println("Memory after:  " + after);
     }
 }
@@ -0,0 +1,59 @@
+package com.example.jni;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+
+/**
+ * JFR event with one {@link MemorySampler.Sample}; see {@link MemorySampler#registerJfrEvent()}
+ *
+ * Fields the kernel does not report are -1.
+ */
+@Name("com.example.jni.MemorySample")
+@Label("Process Memory Sample")
+@Category({"Operating System", "Memory"})
+@Description("RSS, anonymous and THP memory, page tables and swap from /proc/self")
+@Period("100 ms")
+public class MemorySampleEvent extends Event {
+    @Label("Resident Set Size")
+    @DataAmount
+    long rss;
+
+    @Label("Peak Resident Set Size")
+    @DataAmount
+    long rssPeak;
+
+    @Label("Proportional Set Size")
+    @DataAmount
+    long pss;
+
+    @Label("Anonymous Memory")
+    @DataAmount
+    long anonymous;
+
+    @Label("Anonymous Huge Pages")
+    @DataAmount
+    long anonHugePages;
+
+    @Label("Page Tables")
+    @DataAmount
+    long pageTables;
+
+    @Label("Swap")
+    @DataAmount
+    long swap;
+
+    void set(MemorySampler.Sample sample) {
+        rss = sample.rss();
+        rssPeak = sample.rssPeak();
+        pss = sample.pss();
+        anonymous = sample.anonymous();
+        anonHugePages = sample.anonHugePages();
+        pageTables = sample.pageTables();
+        swap = sample.swap();
+    }
+}
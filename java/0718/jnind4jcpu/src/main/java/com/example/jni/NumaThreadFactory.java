@@ -0,0 +1,74 @@
+package com.example.jni;
+
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates threads that bind themselves to a NUMA node before running their task
+ *
+ * Each thread calls {@link CPUInfo#bindToNode(int)} as its first action, so it runs on the
+ * node's CPUs and allocates from the node's memory. {@link #forNode(int)} keeps every thread on
+ * one node; {@link #spread()} assigns nodes round robin, which suits a pool that partitions its
+ * data by node. A thread whose binding fails still runs its task, unbound.
+ */
+public final class NumaThreadFactory implements ThreadFactory {
+    private final String prefix;
+    private final int[] nodes;
+    private final boolean daemon;
+    private final AtomicInteger count = new AtomicInteger();
+
+    private NumaThreadFactory(String prefix, int[] nodes, boolean daemon) {
+        this.prefix = prefix;
+        this.nodes = nodes;
+        this.daemon = daemon;
+    }
+
+    /**
+     * Non-daemon threads named numa-node&lt;node&gt;-&lt;n&gt;, all on one node
+     *
+     * @throws IllegalArgumentException if there is no such node
+     */
+    public static NumaThreadFactory forNode(int node) {
+        boolean found = CPUInfo.getSystemTopology().numaNodes().stream().anyMatch(n -> n.id() == node);
+        if (!found) {
+            throw new IllegalArgumentException("No NUMA node " + node);
+        }
+        return new NumaThreadFactory("numa", new int[] {node}, false);
+    }
+
+    /**
+     * Non-daemon threads named numa-node&lt;node&gt;-&lt;n&gt;, one node after another
+     */
+    public static NumaThreadFactory spread() {
+        List<SystemTopology.NumaNode> numaNodes = CPUInfo.getSystemTopology().numaNodes();
+        int[] nodes = new int[numaNodes.size()];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = numaNodes.get(i).id();
+        }
+        return new NumaThreadFactory("numa", nodes, false);
+    }
+
+    /**
+     * The same node assignment with another name prefix and daemon flag
+     */
+    public NumaThreadFactory withName(String prefix, boolean daemon) {
+        return new NumaThreadFactory(prefix, nodes, daemon);
+    }
+
+    @Override
+    public Thread newThread(Runnable task) {
+        int n = count.getAndIncrement();
+        int node = nodes[n % nodes.length];
+        Thread thread = new Thread(() -> {
+            try {
+                CPUInfo.bindToNode(node);
+            } catch (RuntimeException e) {
+                // Outside our cpuset or the node went away; run where the scheduler puts us
+            }
+            task.run();
+        }, prefix + "-node" + node + "-" + n);
+        thread.setDaemon(daemon);
+        return thread;
+    }
+}
@@ -0,0 +1,192 @@
+package com.example.jni;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Hardware and software event counters for the calling thread, via perf_event_open(2)
+ *
+ * Counts TLB misses, page faults, cycles and instructions around a piece of Java code, the
+ * in-process equivalent of {@code perf stat -e dTLB-load-misses,iTLB-load-misses,...}.
+ * Counters follow the thread that opened them, so open, start, stop and read on one thread.
+ *
+ * Events the kernel or hypervisor does not expose, or that perf_event_paranoid forbids, read
+ * as {@link #UNSUPPORTED} instead of failing the whole set. With perf_event_paranoid = 2 only
+ * user-space events are counted; kernel time then does not show up in cycles or instructions.
+ * When more hardware events are open than the PMU has counters, the kernel multiplexes them
+ * and the values are scaled up from the time each was actually counting.
+ */
+public final class PerfCounters implements AutoCloseable {
+    /**
+     * Value of an event that could not be opened or was never scheduled
+     */
+    public static final long UNSUPPORTED = -1;
+
+    /**
+     * The events this class can count, in the order the native code knows them
+     */
+    public enum Event {
+        CYCLES("cycles"),
+        INSTRUCTIONS("instructions"),
+        DTLB_LOAD_MISSES("dTLB-load-misses"),
+        ITLB_LOAD_MISSES("iTLB-load-misses"),
+        MINOR_FAULTS("minor-faults"),
+        MAJOR_FAULTS("major-faults");
+
+        private final String perfName;
+
+        Event(String perfName) {
+            this.perfName = perfName;
+        }
+
+        /**
+         * The event's name in perf list / perf stat
+         */
+        public String perfName() {
+            return perfName;
+        }
+    }
+
+    static {
+        System.loadLibrary("cpuinfo");
+    }
+
+    private final Event[] events;
+    private long handle;
+
+    private PerfCounters(Event[] events) {
+        int[] ids = new int[events.length];
+        for (int i = 0; i < events.length; i++) {
+            ids[i] = events[i].ordinal();
+        }
+        this.events = events.clone();
+        this.handle = open(ids);
+    }
+
+    /**
+     * Opens disabled counters for the calling thread; every event if none are given
+     */
+    public static PerfCounters open(Event... events) {
+        return new PerfCounters(events.length == 0 ? Event.values() : events);
+    }
+
+    /**
+     * Counts the given events (all of them if none are given) while task runs on this thread
+     */
+    public static Counts measure(Runnable task, Event... events) {
+        try (PerfCounters counters = open(events)) {
+            counters.start();
+            try {
+                task.run();
+            } finally {
+                counters.stop();
+            }
+            return counters.read();
+        }
+    }
+
+    /**
+     * Zeroes and enables all counters
+     */
+    public void start() {
+        start(checkOpen());
+    }
+
+    /**
+     * Disables all counters; their values stay readable
+     */
+    public void stop() {
+        stop(checkOpen());
+    }
+
+    /**
+     * Current values, scaled for multiplexing; counting continues if started
+     */
+    public Counts read() {
+        long[] values = new long[events.length];
+        read(checkOpen(), values);
+        EnumMap<Event, Long> counts = new EnumMap<>(Event.class);
+        for (int i = 0; i < events.length; i++) {
+            counts.put(events[i], values[i]);
+        }
+        return new Counts(counts);
+    }
+
+    /**
+     * True if the event opened on this thread
+     */
+    public boolean isSupported(Event event) {
+        for (int i = 0; i < events.length; i++) {
+            if (events[i] == event) {
+                return isOpen(checkOpen(), i);
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void close() {
+        if (handle != 0) {
+            close(handle);
+            handle = 0;
+        }
+    }
+
+    private long checkOpen() {
+        if (handle == 0) {
+            throw new IllegalStateException("PerfCounters is closed");
+        }
+        return handle;
+    }
+
+    /**
+     * Event values from one measurement
+     */
+    public static final class Counts {
+        private final Map<Event, Long> values;
+
+        Counts(Map<Event, Long> values) {
+            this.values = values;
+        }
+
+        /**
+         * The event's count, or {@link #UNSUPPORTED} if it was not counted
+         */
+        public long get(Event event) {
+            return values.getOrDefault(event, UNSUPPORTED);
+        }
+
+        /**
+         * Instructions per cycle, or NaN if either was not counted
+         */
+        public double ipc() {
+            long cycles = get(Event.CYCLES);
+            long instructions = get(Event.INSTRUCTIONS);
+            return cycles > 0 && instructions >= 0 ? (double) instructions / cycles : Double.NaN;
+        }
+
+        /**
+         * One line per event, in the style of perf stat
+         */
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            for (Map.Entry<Event, Long> e : values.entrySet()) {
+                String value = e.getValue() == UNSUPPORTED ? "<not supported>" : String.format("%,d", e.getValue());
+                sb.append(String.format("%20s  %s%n", value, e.getKey().perfName()));
+            }
+            if (!Double.isNaN(ipc())) {
+                sb.append(String.format("%20.2f  insn per cycle%n", ipc()));
+            }
+            return sb.toString();
+        }
+    }
+
+    // Native methods; the handle is a pointer to the native counter set
+    private static native long open(int[] events);
+    private static native void start(long handle);
+    private static native void stop(long handle);
+    private static native void read(long handle, long[] values);
+    private static native boolean isOpen(long handle, int index);
+    private static native void close(long handle);
+}
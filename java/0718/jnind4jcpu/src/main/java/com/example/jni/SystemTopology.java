@@ -0,0 +1,125 @@
+package com.example.jni;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Memory and CPU topology of this machine, read from sysfs, procfs and uname(2) in one native call
+ *
+ * Obtain it with {@link CPUInfo#getSystemTopology()}, which reads it once and caches it. Counts
+ * that change over time (free memory, free huge pages) are as of that read.
+ *
+ * @param kernelRelease uname -r
+ * @param kernelFlavour the release without its version numbers, e.g. "generic-64k" for
+ *                      5.15.0-91-generic-64k; empty if the release has no suffix
+ * @param machine uname -m
+ * @param pageSize base page size in bytes
+ * @param numaNodes online NUMA nodes by id; one node holding every CPU on non-NUMA kernels
+ * @param caches caches seen by CPU 0, innermost first
+ * @param hugePageSizes supported huge page sizes, smallest first
+ * @param thpEnabled selected /sys/kernel/mm/transparent_hugepage/enabled mode, null without THP
+ * @param thpDefrag selected /sys/kernel/mm/transparent_hugepage/defrag mode, null without THP
+ */
+public record SystemTopology(String kernelRelease, String kernelFlavour, String machine, int pageSize,
+                             List<NumaNode> numaNodes, List<Cache> caches, List<HugePageSize> hugePageSizes,
+                             String thpEnabled, String thpDefrag) {
+
+    /**
+     * @param cpus the node's CPUs, ascending
+     */
+    public record NumaNode(int id, List<Integer> cpus, long memTotalBytes, long memFreeBytes) {
+        public NumaNode {
+            cpus = List.copyOf(cpus);
+        }
+
+        // Called from the native CPUInfo.readSystemTopology()
+        private NumaNode(int id, int[] cpus, long memTotalBytes, long memFreeBytes) {
+            this(id, Arrays.stream(cpus).boxed().toList(), memTotalBytes, memFreeBytes);
+        }
+
+        @Override
+        public String toString() {
+            return "node" + id + " cpus=" + cpus + " memTotal=" + memTotalBytes + " memFree=" + memFreeBytes;
+        }
+    }
+
+    /**
+     * @param type "Data", "Instruction" or "Unified"
+     * @param sharedCpus CPUs sharing this cache with CPU 0, ascending
+     */
+    public record Cache(int level, String type, long sizeBytes, int lineSize, int ways, List<Integer> sharedCpus) {
+        public Cache {
+            sharedCpus = List.copyOf(sharedCpus);
+        }
+
+        // Called from the native CPUInfo.readSystemTopology()
+        private Cache(int level, String type, long sizeBytes, int lineSize, int ways, int[] sharedCpus) {
+            this(level, type, sizeBytes, lineSize, ways, Arrays.stream(sharedCpus).boxed().toList());
+        }
+
+        @Override
+        public String toString() {
+            return "L" + level + " " + type + " size=" + sizeBytes + " line=" + lineSize + " ways=" + ways
+                    + " sharedCpus=" + sharedCpus;
+        }
+    }
+
+    /**
+     * @param total pages reserved in the pool (nr_hugepages)
+     * @param free pages of the pool not in use (free_hugepages)
+     */
+    public record HugePageSize(long sizeBytes, long total, long free) {
+    }
+
+    /**
+     * Online CPUs across all nodes
+     */
+    public int cpuCount() {
+        int count = 0;
+        for (NumaNode node : numaNodes) {
+            count += node.cpus().size();
+        }
+        return count;
+    }
+
+    /**
+     * The data or unified cache at the given level, or null if there is none
+     */
+    public Cache dataCache(int level) {
+        for (Cache cache : caches) {
+            if (cache.level() == level && !"Instruction".equals(cache.type())) {
+                return cache;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Line size of the L1 data cache, 64 if sysfs does not report it
+     */
+    public int cacheLineSize() {
+        Cache l1 = dataCache(1);
+        return l1 != null && l1.lineSize() > 0 ? l1.lineSize() : 64;
+    }
+
+    /**
+     * Size of the outermost data or unified cache, 0 if sysfs reports none
+     */
+    public long lastLevelCacheBytes() {
+        for (int i = caches.size() - 1; i >= 0; i--) {
+            if (!"Instruction".equals(caches.get(i).type())) {
+                return caches.get(i).sizeBytes();
+            }
+        }
+        return 0;
+    }
+
+    // Called from the native CPUInfo.readSystemTopology() with the raw values
+    private static SystemTopology of(String kernelRelease, String machine, int pageSize, NumaNode[] numaNodes,
+                                     Cache[] caches, HugePageSize[] hugePageSizes, String thpEnabled,
+                                     String thpDefrag) {
+        String flavour = kernelRelease.replaceFirst("^[0-9]+(\\.[0-9]+)*(-[0-9]+(\\.[0-9]+)*)?-?", "");
+        return new SystemTopology(kernelRelease, flavour, machine, pageSize, List.of(numaNodes), List.of(caches),
+                List.of(hugePageSizes), thpEnabled, thpDefrag);
+    }
+}
@@ -1,9 +1,17 @@
+#define _GNU_SOURCE
 #include <jni.h>
+#include <dirent.h>
+#include <errno.h>
+#include <sched.h>
 #include <stdio.h>
 #include <stdlib.h>
 #include <string.h>
 #include <unistd.h>
 #include <stdint.h>
+#include <sys/mman.h>
+#include <sys/syscall.h>
+#include <sys/utsname.h>
+#include <linux/mempolicy.h>
 #include "com_example_jni_CPUInfo.h"
 
 /*
@@ -60,3 +68,399 @@ JNIEXPORT jstring JNICALL Java_com_example_jni_CPUInfo_getCPUModel
     fclose(cpuinfo);
     return (*env)->NewStringUTF(env, model);
 }
+
+/* SystemTopology: everything below is read once, by readSystemTopology */
+
+#define NODE_DIR "/sys/devices/system/node"
+#define CACHE_DIR "/sys/devices/system/cpu/cpu0/cache"
+#define HUGEPAGE_DIR "/sys/kernel/mm/hugepages"
+#define THP_DIR "/sys/kernel/mm/transparent_hugepage"
+
+/* Reads a small text file without its trailing newline; returns its length or -1 */
+static int read_text(const char *path, char *buf, size_t size) {
+    FILE *f = fopen(path, "r");
+    if (f == NULL) {
+        return -1;
+    }
+    size_t n = fread(buf, 1, size - 1, f);
+    fclose(f);
+    while (n > 0 && (buf[n - 1] == '\n' || buf[n - 1] == ' ')) {
+        n--;
+    }
+    buf[n] = '\0';
+    return (int)n;
+}
+
+static long long read_long(const char *path, long long fallback) {
+    char buf[64];
+    return read_text(path, buf, sizeof(buf)) > 0 ? strtoll(buf, NULL, 10) : fallback;
+}
+
+/* "48K", "2048K", "32M" -> bytes */
+static long long parse_size(const char *s) {
+    char *end;
+    long long v = strtoll(s, &end, 10);
+    switch (*end) {
+        case 'K': return v << 10;
+        case 'M': return v << 20;
+        case 'G': return v << 30;
+        default: return v;
+    }
+}
+
+/* Expands a cpulist such as "0-3,8,10-11" into a new int[] */
+static jintArray parse_cpulist(JNIEnv *env, const char *list) {
+    int count = 0;
+    for (const char *p = list; *p; ) {
+        char *end;
+        long lo = strtol(p, &end, 10), hi = lo;
+        if (end == p) {
+            break;
+        }
+        if (*end == '-') {
+            p = end + 1;
+            hi = strtol(p, &end, 10);
+        }
+        count += (int)(hi - lo + 1);
+        p = *end == ',' ? end + 1 : end;
+    }
+
+    jintArray array = (*env)->NewIntArray(env, count);
+    if (array == NULL || count == 0) {
+        return array;
+    }
+    jint *cpus = (*env)->GetIntArrayElements(env, array, NULL);
+    int i = 0;
+    for (const char *p = list; *p && i < count; ) {
+        char *end;
+        long lo = strtol(p, &end, 10), hi = lo;
+        if (end == p) {
+            break;
+        }
+        if (*end == '-') {
+            p = end + 1;
+            hi = strtol(p, &end, 10);
+        }
+        for (long cpu = lo; cpu <= hi && i < count; cpu++) {
+            cpus[i++] = (jint)cpu;
+        }
+        p = *end == ',' ? end + 1 : end;
+    }
+    (*env)->ReleaseIntArrayElements(env, array, cpus, 0);
+    return array;
+}
+
+/* Finds "<key>: <n> kB" in a meminfo file ("Node 0 MemTotal:" lines included); returns bytes */
+static long long meminfo_bytes(const char *text, const char *key) {
+    const char *p = strstr(text, key);
+    return p != NULL ? strtoll(p + strlen(key) + 1, NULL, 10) << 10 : 0;
+}
+
+/* The bracketed choice in "always [madvise] never", or NULL */
+static jstring selected_mode(JNIEnv *env, const char *path) {
+    char buf[256];
+    if (read_text(path, buf, sizeof(buf)) < 0) {
+        return NULL;
+    }
+    char *open = strchr(buf, '[');
+    char *close = open != NULL ? strchr(open, ']') : NULL;
+    if (close == NULL) {
+        return NULL;
+    }
+    *close = '\0';
+    return (*env)->NewStringUTF(env, open + 1);
+}
+
+static int compare_long(const void *a, const void *b) {
+    long x = *(const long *)a, y = *(const long *)b;
+    return x < y ? -1 : x > y;
+}
+
+/* Numeric suffixes of directory entries named prefix<n><suffix>, sorted; returns the count */
+static int list_ids(const char *dir, const char *format, long *ids, int max) {
+    DIR *d = opendir(dir);
+    if (d == NULL) {
+        return 0;
+    }
+    int count = 0;
+    struct dirent *e;
+    while ((e = readdir(d)) != NULL && count < max) {
+        long id;
+        if (sscanf(e->d_name, format, &id) == 1) {
+            ids[count++] = id;
+        }
+    }
+    closedir(d);
+    qsort(ids, count, sizeof(long), compare_long);
+    return count;
+}
+
+#define MAX_ENTRIES 1024
+
+static jobjectArray read_nodes(JNIEnv *env) {
+    jclass cls = (*env)->FindClass(env, "com/example/jni/SystemTopology$NumaNode");
+    jmethodID ctor = (*env)->GetMethodID(env, cls, "<init>", "(I[IJJ)V");
+    char text[8192];
+    char path[128], cpulist[4096];
+
+    long ids[MAX_ENTRIES];
+    int count = list_ids(NODE_DIR, "node%ld", ids, MAX_ENTRIES);
+    if (count == 0) {
+        // Kernel without CONFIG_NUMA: one node with every online CPU and all memory
+        jobjectArray nodes = (*env)->NewObjectArray(env, 1, cls, NULL);
+        if (read_text("/sys/devices/system/cpu/online", cpulist, sizeof(cpulist)) < 0) {
+            snprintf(cpulist, sizeof(cpulist), "0-%ld", sysconf(_SC_NPROCESSORS_ONLN) - 1);
+        }
+        if (read_text("/proc/meminfo", text, sizeof(text)) < 0) {
+            text[0] = '\0';
+        }
+        jintArray cpus = parse_cpulist(env, cpulist);
+        jobject node = (*env)->NewObject(env, cls, ctor, 0, cpus,
+                (jlong)meminfo_bytes(text, "MemTotal:"), (jlong)meminfo_bytes(text, "MemFree:"));
+        (*env)->SetObjectArrayElement(env, nodes, 0, node);
+        return nodes;
+    }
+
+    jobjectArray nodes = (*env)->NewObjectArray(env, count, cls, NULL);
+    for (int i = 0; i < count; i++) {
+        snprintf(path, sizeof(path), NODE_DIR "/node%ld/cpulist", ids[i]);
+        if (read_text(path, cpulist, sizeof(cpulist)) < 0) {
+            cpulist[0] = '\0';
+        }
+        snprintf(path, sizeof(path), NODE_DIR "/node%ld/meminfo", ids[i]);
+        if (read_text(path, text, sizeof(text)) < 0) {
+            text[0] = '\0';
+        }
+        jintArray cpus = parse_cpulist(env, cpulist);
+        jobject node = (*env)->NewObject(env, cls, ctor, (jint)ids[i], cpus,
+                (jlong)meminfo_bytes(text, "MemTotal:"), (jlong)meminfo_bytes(text, "MemFree:"));
+        (*env)->SetObjectArrayElement(env, nodes, i, node);
+        (*env)->DeleteLocalRef(env, cpus);
+        (*env)->DeleteLocalRef(env, node);
+    }
+    return nodes;
+}
+
+static jobjectArray read_caches(JNIEnv *env) {
+    jclass cls = (*env)->FindClass(env, "com/example/jni/SystemTopology$Cache");
+    jmethodID ctor = (*env)->GetMethodID(env, cls, "<init>", "(ILjava/lang/String;JII[I)V");
+    char path[128], buf[4096];
+
+    long ids[MAX_ENTRIES];
+    int count = list_ids(CACHE_DIR, "index%ld", ids, MAX_ENTRIES);
+    jobjectArray caches = (*env)->NewObjectArray(env, count, cls, NULL);
+    for (int i = 0; i < count; i++) {
+        snprintf(path, sizeof(path), CACHE_DIR "/index%ld/level", ids[i]);
+        jint level = (jint)read_long(path, 0);
+        snprintf(path, sizeof(path), CACHE_DIR "/index%ld/coherency_line_size", ids[i]);
+        jint line = (jint)read_long(path, 0);
+        snprintf(path, sizeof(path), CACHE_DIR "/index%ld/ways_of_associativity", ids[i]);
+        jint ways = (jint)read_long(path, 0);
+        snprintf(path, sizeof(path), CACHE_DIR "/index%ld/size", ids[i]);
+        jlong size = read_text(path, buf, sizeof(buf)) > 0 ? parse_size(buf) : 0;
+        snprintf(path, sizeof(path), CACHE_DIR "/index%ld/type", ids[i]);
+        jstring type = (*env)->NewStringUTF(env, read_text(path, buf, sizeof(buf)) > 0 ? buf : "Unknown");
+        snprintf(path, sizeof(path), CACHE_DIR "/index%ld/shared_cpu_list", ids[i]);
+        jintArray shared = parse_cpulist(env, read_text(path, buf, sizeof(buf)) > 0 ? buf : "0");
+
+        jobject cache = (*env)->NewObject(env, cls, ctor, level, type, size, line, ways, shared);
+        (*env)->SetObjectArrayElement(env, caches, i, cache);
+        (*env)->DeleteLocalRef(env, type);
+        (*env)->DeleteLocalRef(env, shared);
+        (*env)->DeleteLocalRef(env, cache);
+    }
+    return caches;
+}
+
+static jobjectArray read_hugepages(JNIEnv *env) {
+    jclass cls = (*env)->FindClass(env, "com/example/jni/SystemTopology$HugePageSize");
+    jmethodID ctor = (*env)->GetMethodID(env, cls, "<init>", "(JJJ)V");
+    char path[128];
+
+    long sizes[64];
+    int count = list_ids(HUGEPAGE_DIR, "hugepages-%ldkB", sizes, 64);
+    jobjectArray pages = (*env)->NewObjectArray(env, count, cls, NULL);
+    for (int i = 0; i < count; i++) {
+        snprintf(path, sizeof(path), HUGEPAGE_DIR "/hugepages-%ldkB/nr_hugepages", sizes[i]);
+        jlong total = read_long(path, 0);
+        snprintf(path, sizeof(path), HUGEPAGE_DIR "/hugepages-%ldkB/free_hugepages", sizes[i]);
+        jlong free = read_long(path, 0);
+        jobject page = (*env)->NewObject(env, cls, ctor, (jlong)sizes[i] << 10, total, free);
+        (*env)->SetObjectArrayElement(env, pages, i, page);
+        (*env)->DeleteLocalRef(env, page);
+    }
+    return pages;
+}
+
+/*
+ * Class:     com_example_jni_CPUInfo
+ * Method:    readSystemTopology
+ * Signature: ()Lcom/example/jni/SystemTopology;
+ */
+JNIEXPORT jobject JNICALL Java_com_example_jni_CPUInfo_readSystemTopology
+  (JNIEnv *env, jclass cls) {
+    struct utsname uts;
+    if (uname(&uts) != 0) {
+        strcpy(uts.release, "unknown");
+        strcpy(uts.machine, "unknown");
+    }
+
+    jobjectArray nodes = read_nodes(env);
+    if (nodes == NULL) {
+        return NULL;
+    }
+    jobjectArray caches = read_caches(env);
+    if (caches == NULL) {
+        return NULL;
+    }
+    jobjectArray hugepages = read_hugepages(env);
+    if (hugepages == NULL) {
+        return NULL;
+    }
+
+    jclass topology = (*env)->FindClass(env, "com/example/jni/SystemTopology");
+    if (topology == NULL) {
+        return NULL;
+    }
+    jmethodID of = (*env)->GetStaticMethodID(env, topology, "of",
+            "(Ljava/lang/String;Ljava/lang/String;I[Lcom/example/jni/SystemTopology$NumaNode;"
+            "[Lcom/example/jni/SystemTopology$Cache;[Lcom/example/jni/SystemTopology$HugePageSize;"
+            "Ljava/lang/String;Ljava/lang/String;)Lcom/example/jni/SystemTopology;");
+    if (of == NULL) {
+        return NULL;
+    }
+    return (*env)->CallStaticObjectMethod(env, topology, of,
+            (*env)->NewStringUTF(env, uts.release), (*env)->NewStringUTF(env, uts.machine),
+            (jint)sysconf(_SC_PAGESIZE), nodes, caches, hugepages,
+            selected_mode(env, THP_DIR "/enabled"), selected_mode(env, THP_DIR "/defrag"));
+}
+
+/* Affinity and NUMA placement, through the raw syscalls so libnuma is not needed */
+
+#define MAX_NODE_BITS 1024
+
+static void throw_errno(JNIEnv *env, const char *cls, const char *call, int err) {
+    char msg[256];
+    snprintf(msg, sizeof(msg), "%s: %s", call, strerror(err));
+    (*env)->ThrowNew(env, (*env)->FindClass(env, cls), msg);
+}
+
+/* A nodemask with just the given node; false if the node does not fit */
+static int node_mask(int node, unsigned long *mask) {
+    memset(mask, 0, MAX_NODE_BITS / 8);
+    // The kernel reads one bit less than maxnode
+    if (node < 0 || node >= MAX_NODE_BITS - 1) {
+        return 0;
+    }
+    mask[node / (8 * sizeof(unsigned long))] = 1UL << (node % (8 * sizeof(unsigned long)));
+    return 1;
+}
+
+/*
+ * Class:     com_example_jni_CPUInfo
+ * Method:    setAffinity
+ * Signature: ([I)V
+ */
+JNIEXPORT void JNICALL Java_com_example_jni_CPUInfo_setAffinity
+  (JNIEnv *env, jclass cls, jintArray cpus) {
+    jsize count = (*env)->GetArrayLength(env, cpus);
+    jint *ids = (*env)->GetIntArrayElements(env, cpus, NULL);
+    int max = 0;
+    for (int i = 0; i < count; i++) {
+        max = ids[i] > max ? ids[i] : max;
+    }
+    cpu_set_t *set = CPU_ALLOC(max + 1);
+    size_t size = CPU_ALLOC_SIZE(max + 1);
+    if (set == NULL) {
+        (*env)->ReleaseIntArrayElements(env, cpus, ids, JNI_ABORT);
+        (*env)->ThrowNew(env, (*env)->FindClass(env, "java/lang/OutOfMemoryError"), "cpu_set_t");
+        return;
+    }
+    CPU_ZERO_S(size, set);
+    for (int i = 0; i < count; i++) {
+        if (ids[i] >= 0) {
+            CPU_SET_S(ids[i], size, set);
+        }
+    }
+    (*env)->ReleaseIntArrayElements(env, cpus, ids, JNI_ABORT);
+
+    // pid 0 is the calling thread, not the whole process
+    int rc = sched_setaffinity(0, size, set);
+    int err = errno;
+    CPU_FREE(set);
+    if (rc != 0) {
+        throw_errno(env, err == EINVAL ? "java/lang/IllegalArgumentException" : "java/lang/IllegalStateException",
+                "sched_setaffinity", err);
+    }
+}
+
+/*
+ * Class:     com_example_jni_CPUInfo
+ * Method:    setPreferredNode
+ * Signature: (I)V
+ */
+JNIEXPORT void JNICALL Java_com_example_jni_CPUInfo_setPreferredNode
+  (JNIEnv *env, jclass cls, jint node) {
+    unsigned long mask[MAX_NODE_BITS / (8 * sizeof(unsigned long))];
+    if (!node_mask(node, mask)) {
+        throw_errno(env, "java/lang/IllegalArgumentException", "set_mempolicy", EINVAL);
+        return;
+    }
+    // ENOSYS: kernel without NUMA, where every page is node 0's anyway
+    if (syscall(__NR_set_mempolicy, MPOL_PREFERRED, mask, MAX_NODE_BITS) != 0 && errno != ENOSYS) {
+        throw_errno(env, errno == EINVAL ? "java/lang/IllegalArgumentException" : "java/lang/IllegalStateException",
+                "set_mempolicy", errno);
+    }
+}
+
+/*
+ * Class:     com_example_jni_CPUInfo
+ * Method:    mapOnNode
+ * Signature: (JI)Ljava/nio/ByteBuffer;
+ */
+JNIEXPORT jobject JNICALL Java_com_example_jni_CPUInfo_mapOnNode
+  (JNIEnv *env, jclass cls, jlong size, jint node) {
+    unsigned long mask[MAX_NODE_BITS / (8 * sizeof(unsigned long))];
+    if (!node_mask(node, mask)) {
+        throw_errno(env, "java/lang/IllegalArgumentException", "mbind", EINVAL);
+        return NULL;
+    }
+    void *addr = mmap(NULL, (size_t)size, PROT_READ | PROT_WRITE, MAP_PRIVATE | MAP_ANONYMOUS, -1, 0);
+    if (addr == MAP_FAILED) {
+        throw_errno(env, "java/lang/OutOfMemoryError", "mmap", errno);
+        return NULL;
+    }
+    // Nothing is resident yet, so every page faults in on the node
+    if (syscall(__NR_mbind, addr, (unsigned long)size, MPOL_BIND, mask, MAX_NODE_BITS, 0) != 0 && errno != ENOSYS) {
+        int err = errno;
+        munmap(addr, (size_t)size);
+        throw_errno(env, err == EINVAL ? "java/lang/IllegalArgumentException" : "java/lang/IllegalStateException",
+                "mbind", err);
+        return NULL;
+    }
+    jobject buffer = (*env)->NewDirectByteBuffer(env, addr, size);
+    if (buffer == NULL) {
+        munmap(addr, (size_t)size);
+    }
+    return buffer;
+}
+
+/*
+ * Class:     com_example_jni_CPUInfo
+ * Method:    address
+ * Signature: (Ljava/nio/ByteBuffer;)J
+ */
+JNIEXPORT jlong JNICALL Java_com_example_jni_CPUInfo_address
+  (JNIEnv *env, jclass cls, jobject buffer) {
+    return (jlong)(intptr_t)(*env)->GetDirectBufferAddress(env, buffer);
+}
+
+/*
+ * Class:     com_example_jni_CPUInfo
+ * Method:    unmap
+ * Signature: (JJ)V
+ */
+JNIEXPORT void JNICALL Java_com_example_jni_CPUInfo_unmap
+  (JNIEnv *env, jclass cls, jlong address, jlong size) {
+    munmap((void *)(intptr_t)address, (size_t)size);
+}
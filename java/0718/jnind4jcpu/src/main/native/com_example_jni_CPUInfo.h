@@ -31,6 +31,54 @@ JNIEXPORT jint JNICALL Java_com_example_jni_CPUInfo_getCPUCores
 JNIEXPORT jstring JNICALL Java_com_example_jni_CPUInfo_getCPUModel
   (JNIEnv *, jobject);
 
+/*
+ * Class:     com_example_jni_CPUInfo
+ * Method:    readSystemTopology
+ * Signature: ()Lcom/example/jni/SystemTopology;
+ */
+JNIEXPORT jobject JNICALL Java_com_example_jni_CPUInfo_readSystemTopology
+  (JNIEnv *, jclass);
+
+/*
+ * Class:     com_example_jni_CPUInfo
+ * Method:    setAffinity
+ * Signature: ([I)V
+ */
+JNIEXPORT void JNICALL Java_com_example_jni_CPUInfo_setAffinity
+  (JNIEnv *, jclass, jintArray);
+
+/*
+ * Class:     com_example_jni_CPUInfo
+ * Method:    setPreferredNode
+ * Signature: (I)V
+ */
+JNIEXPORT void JNICALL Java_com_example_jni_CPUInfo_setPreferredNode
+  (JNIEnv *, jclass, jint);
+
+/*
+ * Class:     com_example_jni_CPUInfo
+ * Method:    mapOnNode
+ * Signature: (JI)Ljava/nio/ByteBuffer;
+ */
+JNIEXPORT jobject JNICALL Java_com_example_jni_CPUInfo_mapOnNode
+  (JNIEnv *, jclass, jlong, jint);
+
+/*
+ * Class:     com_example_jni_CPUInfo
+ * Method:    address
+ * Signature: (Ljava/nio/ByteBuffer;)J
+ */
+JNIEXPORT jlong JNICALL Java_com_example_jni_CPUInfo_address
+  (JNIEnv *, jclass, jobject);
+
+/*
+ * Class:     com_example_jni_CPUInfo
+ * Method:    unmap
+ * Signature: (JJ)V
+ */
+JNIEXPORT void JNICALL Java_com_example_jni_CPUInfo_unmap
+  (JNIEnv *, jclass, jlong, jlong);
+
 #ifdef __cplusplus
 }
 #endif
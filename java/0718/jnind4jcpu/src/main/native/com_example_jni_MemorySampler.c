@@ -0,0 +1,125 @@
+#include <jni.h>
+#include <fcntl.h>
+#include <stdint.h>
+#include <stdlib.h>
+#include <string.h>
+#include <unistd.h>
+#include "com_example_jni_MemorySampler.h"
+
+/* Same order as the index constants in MemorySampler */
+enum { RSS, RSS_PEAK, PSS, ANONYMOUS, ANON_HUGE_PAGES, PAGE_TABLES, SWAP, FIELD_COUNT };
+
+typedef struct {
+    const char *key;
+    int field;
+} field_key;
+
+/* Lines of /proc/self/smaps_rollup; needs Linux 4.14 */
+static const field_key ROLLUP_KEYS[] = {
+    { "Pss:", PSS },
+    { "Anonymous:", ANONYMOUS },
+    { "AnonHugePages:", ANON_HUGE_PAGES },
+};
+
+/* Lines of /proc/self/status; RssAnon stands in for Anonymous without smaps_rollup */
+static const field_key STATUS_KEYS[] = {
+    { "VmRSS:", RSS },
+    { "VmHWM:", RSS_PEAK },
+    { "RssAnon:", ANONYMOUS },
+    { "VmPTE:", PAGE_TABLES },
+    { "VmSwap:", SWAP },
+};
+
+#define BUFFER_SIZE 8192
+
+typedef struct {
+    int rollup_fd;
+    int status_fd;
+    char buf[BUFFER_SIZE];
+} sampler;
+
+/*
+ * Class:     com_example_jni_MemorySampler
+ * Method:    openFiles
+ * Signature: (Z)J
+ */
+JNIEXPORT jlong JNICALL Java_com_example_jni_MemorySampler_openFiles
+  (JNIEnv *env, jclass cls, jboolean rollup) {
+    sampler *s = malloc(sizeof(sampler));
+    if (s == NULL) {
+        (*env)->ThrowNew(env, (*env)->FindClass(env, "java/lang/OutOfMemoryError"), "MemorySampler");
+        return 0;
+    }
+    s->rollup_fd = rollup ? open("/proc/self/smaps_rollup", O_RDONLY | O_CLOEXEC) : -1;
+    s->status_fd = open("/proc/self/status", O_RDONLY | O_CLOEXEC);
+    return (jlong)(intptr_t)s;
+}
+
+/* Reads the whole file from offset 0 into the sampler's buffer; returns the length or -1 */
+static int read_all(sampler *s, int fd) {
+    if (fd < 0) {
+        return -1;
+    }
+    ssize_t n = pread(fd, s->buf, BUFFER_SIZE - 1, 0);
+    if (n < 0) {
+        return -1;
+    }
+    s->buf[n] = '\0';
+    return (int)n;
+}
+
+/* Stores "<key> <n> kB" lines as bytes; the first match of a field wins */
+static void parse(const char *text, const field_key *keys, int key_count, jlong *out) {
+    for (const char *line = text; *line; ) {
+        for (int i = 0; i < key_count; i++) {
+            size_t len = strlen(keys[i].key);
+            if (out[keys[i].field] < 0 && strncmp(line, keys[i].key, len) == 0) {
+                out[keys[i].field] = strtoll(line + len, NULL, 10) << 10;
+                break;
+            }
+        }
+        const char *next = strchr(line, '\n');
+        if (next == NULL) {
+            break;
+        }
+        line = next + 1;
+    }
+}
+
+/*
+ * Class:     com_example_jni_MemorySampler
+ * Method:    sample
+ * Signature: (J[J)V
+ */
+JNIEXPORT void JNICALL Java_com_example_jni_MemorySampler_sample
+  (JNIEnv *env, jclass cls, jlong handle, jlongArray values) {
+    sampler *s = (sampler *)(intptr_t)handle;
+    jlong out[FIELD_COUNT];
+    for (int i = 0; i < FIELD_COUNT; i++) {
+        out[i] = -1;
+    }
+    if (read_all(s, s->rollup_fd) > 0) {
+        parse(s->buf, ROLLUP_KEYS, sizeof(ROLLUP_KEYS) / sizeof(ROLLUP_KEYS[0]), out);
+    }
+    if (read_all(s, s->status_fd) > 0) {
+        parse(s->buf, STATUS_KEYS, sizeof(STATUS_KEYS) / sizeof(STATUS_KEYS[0]), out);
+    }
+    (*env)->SetLongArrayRegion(env, values, 0, FIELD_COUNT, out);
+}
+
+/*
+ * Class:     com_example_jni_MemorySampler
+ * Method:    close
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_com_example_jni_MemorySampler_close
+  (JNIEnv *env, jclass cls, jlong handle) {
+    sampler *s = (sampler *)(intptr_t)handle;
+    if (s->rollup_fd >= 0) {
+        close(s->rollup_fd);
+    }
+    if (s->status_fd >= 0) {
+        close(s->status_fd);
+    }
+    free(s);
+}
@@ -0,0 +1,55 @@
+/* DO NOT EDIT THIS FILE - it is machine generated */
+#include <jni.h>
+/* Header for class com_example_jni_MemorySampler */
+
+#ifndef _Included_com_example_jni_MemorySampler
+#define _Included_com_example_jni_MemorySampler
+#ifdef __cplusplus
+extern "C" {
+#endif
+#undef com_example_jni_MemorySampler_UNSUPPORTED
+#define com_example_jni_MemorySampler_UNSUPPORTED -1LL
+#undef com_example_jni_MemorySampler_RSS
+#define com_example_jni_MemorySampler_RSS 0L
+#undef com_example_jni_MemorySampler_RSS_PEAK
+#define com_example_jni_MemorySampler_RSS_PEAK 1L
+#undef com_example_jni_MemorySampler_PSS
+#define com_example_jni_MemorySampler_PSS 2L
+#undef com_example_jni_MemorySampler_ANONYMOUS
+#define com_example_jni_MemorySampler_ANONYMOUS 3L
+#undef com_example_jni_MemorySampler_ANON_HUGE_PAGES
+#define com_example_jni_MemorySampler_ANON_HUGE_PAGES 4L
+#undef com_example_jni_MemorySampler_PAGE_TABLES
+#define com_example_jni_MemorySampler_PAGE_TABLES 5L
+#undef com_example_jni_MemorySampler_SWAP
+#define com_example_jni_MemorySampler_SWAP 6L
+#undef com_example_jni_MemorySampler_FIELD_COUNT
+#define com_example_jni_MemorySampler_FIELD_COUNT 7L
+/*
+ * Class:     com_example_jni_MemorySampler
+ * Method:    openFiles
+ * Signature: (Z)J
+ */
+JNIEXPORT jlong JNICALL Java_com_example_jni_MemorySampler_openFiles
+  (JNIEnv *, jclass, jboolean);
+
+/*
+ * Class:     com_example_jni_MemorySampler
+ * Method:    sample
+ * Signature: (J[J)V
+ */
+JNIEXPORT void JNICALL Java_com_example_jni_MemorySampler_sample
+  (JNIEnv *, jclass, jlong, jlongArray);
+
+/*
+ * Class:     com_example_jni_MemorySampler
+ * Method:    close
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_com_example_jni_MemorySampler_close
+  (JNIEnv *, jclass, jlong);
+
+#ifdef __cplusplus
+}
+#endif
+#endif
@@ -0,0 +1,155 @@
+#include <jni.h>
+#include <errno.h>
+#include <stdint.h>
+#include <stdlib.h>
+#include <string.h>
+#include <unistd.h>
+#include <sys/ioctl.h>
+#include <sys/syscall.h>
+#include <linux/perf_event.h>
+#include "com_example_jni_PerfCounters.h"
+
+/* Same order as PerfCounters.Event */
+static const struct {
+    uint32_t type;
+    uint64_t config;
+} EVENTS[] = {
+    { PERF_TYPE_HARDWARE, PERF_COUNT_HW_CPU_CYCLES },
+    { PERF_TYPE_HARDWARE, PERF_COUNT_HW_INSTRUCTIONS },
+    { PERF_TYPE_HW_CACHE, PERF_COUNT_HW_CACHE_DTLB | (PERF_COUNT_HW_CACHE_OP_READ << 8) | (PERF_COUNT_HW_CACHE_RESULT_MISS << 16) },
+    { PERF_TYPE_HW_CACHE, PERF_COUNT_HW_CACHE_ITLB | (PERF_COUNT_HW_CACHE_OP_READ << 8) | (PERF_COUNT_HW_CACHE_RESULT_MISS << 16) },
+    { PERF_TYPE_SOFTWARE, PERF_COUNT_SW_PAGE_FAULTS_MIN },
+    { PERF_TYPE_SOFTWARE, PERF_COUNT_SW_PAGE_FAULTS_MAJ },
+};
+#define EVENT_COUNT ((int)(sizeof(EVENTS) / sizeof(EVENTS[0])))
+
+typedef struct {
+    int count;
+    int fds[];
+} counter_set;
+
+static int open_event(int event) {
+    struct perf_event_attr attr;
+    memset(&attr, 0, sizeof(attr));
+    attr.size = sizeof(attr);
+    attr.type = EVENTS[event].type;
+    attr.config = EVENTS[event].config;
+    attr.disabled = 1;
+    attr.exclude_hv = 1;
+    attr.read_format = PERF_FORMAT_TOTAL_TIME_ENABLED | PERF_FORMAT_TOTAL_TIME_RUNNING;
+
+    // Calling thread only (pid 0), on any CPU
+    int fd = (int)syscall(__NR_perf_event_open, &attr, 0, -1, -1, 0);
+    if (fd < 0 && (errno == EACCES || errno == EPERM)) {
+        // perf_event_paranoid >= 2 allows user-space counting only
+        attr.exclude_kernel = 1;
+        fd = (int)syscall(__NR_perf_event_open, &attr, 0, -1, -1, 0);
+    }
+    return fd;
+}
+
+/*
+ * Class:     com_example_jni_PerfCounters
+ * Method:    open
+ * Signature: ([I)J
+ */
+JNIEXPORT jlong JNICALL Java_com_example_jni_PerfCounters_open
+  (JNIEnv *env, jclass cls, jintArray events) {
+    jsize count = (*env)->GetArrayLength(env, events);
+    counter_set *set = malloc(sizeof(counter_set) + count * sizeof(int));
+    if (set == NULL) {
+        (*env)->ThrowNew(env, (*env)->FindClass(env, "java/lang/OutOfMemoryError"), "PerfCounters");
+        return 0;
+    }
+    jint *ids = (*env)->GetIntArrayElements(env, events, NULL);
+    set->count = count;
+    for (int i = 0; i < count; i++) {
+        set->fds[i] = ids[i] >= 0 && ids[i] < EVENT_COUNT ? open_event(ids[i]) : -1;
+    }
+    (*env)->ReleaseIntArrayElements(env, events, ids, JNI_ABORT);
+    return (jlong)(intptr_t)set;
+}
+
+static void ioctl_all(counter_set *set, unsigned long request) {
+    for (int i = 0; i < set->count; i++) {
+        if (set->fds[i] >= 0) {
+            ioctl(set->fds[i], request, 0);
+        }
+    }
+}
+
+/*
+ * Class:     com_example_jni_PerfCounters
+ * Method:    start
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_com_example_jni_PerfCounters_start
+  (JNIEnv *env, jclass cls, jlong handle) {
+    counter_set *set = (counter_set *)(intptr_t)handle;
+    ioctl_all(set, PERF_EVENT_IOC_RESET);
+    ioctl_all(set, PERF_EVENT_IOC_ENABLE);
+}
+
+/*
+ * Class:     com_example_jni_PerfCounters
+ * Method:    stop
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_com_example_jni_PerfCounters_stop
+  (JNIEnv *env, jclass cls, jlong handle) {
+    ioctl_all((counter_set *)(intptr_t)handle, PERF_EVENT_IOC_DISABLE);
+}
+
+/*
+ * Class:     com_example_jni_PerfCounters
+ * Method:    read
+ * Signature: (J[J)V
+ */
+JNIEXPORT void JNICALL Java_com_example_jni_PerfCounters_read
+  (JNIEnv *env, jclass cls, jlong handle, jlongArray values) {
+    counter_set *set = (counter_set *)(intptr_t)handle;
+    jlong *out = (*env)->GetLongArrayElements(env, values, NULL);
+    for (int i = 0; i < set->count; i++) {
+        // value, time enabled, time running
+        uint64_t v[3];
+        out[i] = -1;
+        if (set->fds[i] < 0 || read(set->fds[i], v, sizeof(v)) != sizeof(v)) {
+            continue;
+        }
+        if (v[2] == 0) {
+            // Never started reads 0; enabled but never scheduled on a counter is unknown
+            out[i] = v[1] == 0 ? (jlong)v[0] : -1;
+            continue;
+        }
+        // Multiplexed: extrapolate from the share of time the event was on a counter
+        out[i] = v[2] < v[1] ? (jlong)((double)v[0] * v[1] / v[2]) : (jlong)v[0];
+    }
+    (*env)->ReleaseLongArrayElements(env, values, out, 0);
+}
+
+/*
+ * Class:     com_example_jni_PerfCounters
+ * Method:    isOpen
+ * Signature: (JI)Z
+ */
+JNIEXPORT jboolean JNICALL Java_com_example_jni_PerfCounters_isOpen
+  (JNIEnv *env, jclass cls, jlong handle, jint index) {
+    counter_set *set = (counter_set *)(intptr_t)handle;
+    return index >= 0 && index < set->count && set->fds[index] >= 0;
+}
+
+/*
+ * Class:     com_example_jni_PerfCounters
+ * Method:    close
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_com_example_jni_PerfCounters_close
+  (JNIEnv *env, jclass cls, jlong handle) {
+    counter_set *set = (counter_set *)(intptr_t)handle;
+    for (int i = 0; i < set->count; i++) {
+        if (set->fds[i] >= 0) {
+            close(set->fds[i]);
+        }
+    }
+    free(set);
+}
@@ -0,0 +1,63 @@
+/* DO NOT EDIT THIS FILE - it is machine generated */
+#include <jni.h>
+/* Header for class com_example_jni_PerfCounters */
+
+#ifndef _Included_com_example_jni_PerfCounters
+#define _Included_com_example_jni_PerfCounters
+#ifdef __cplusplus
+extern "C" {
+#endif
+#undef com_example_jni_PerfCounters_UNSUPPORTED
+#define com_example_jni_PerfCounters_UNSUPPORTED -1LL
+/*
+ * Class:     com_example_jni_PerfCounters
+ * Method:    open
+ * Signature: ([I)J
+ */
+JNIEXPORT jlong JNICALL Java_com_example_jni_PerfCounters_open
+  (JNIEnv *, jclass, jintArray);
+
+/*
+ * Class:     com_example_jni_PerfCounters
+ * Method:    start
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_com_example_jni_PerfCounters_start
+  (JNIEnv *, jclass, jlong);
+
+/*
+ * Class:     com_example_jni_PerfCounters
+ * Method:    stop
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_com_example_jni_PerfCounters_stop
+  (JNIEnv *, jclass, jlong);
+
+/*
+ * Class:     com_example_jni_PerfCounters
+ * Method:    read
+ * Signature: (J[J)V
+ */
+JNIEXPORT void JNICALL Java_com_example_jni_PerfCounters_read
+  (JNIEnv *, jclass, jlong, jlongArray);
+
+/*
+ * Class:     com_example_jni_PerfCounters
+ * Method:    isOpen
+ * Signature: (JI)Z
+ */
+JNIEXPORT jboolean JNICALL Java_com_example_jni_PerfCounters_isOpen
+  (JNIEnv *, jclass, jlong, jint);
+
+/*
+ * Class:     com_example_jni_PerfCounters
+ * Method:    close
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_com_example_jni_PerfCounters_close
+  (JNIEnv *, jclass, jlong);
+
+#ifdef __cplusplus
+}
+#endif
+#endif
@@ -0,0 +1,20 @@
+#!/bin/bash
+
+# Runs the UCrypto benchmarks and writes ucrypto-bench-<pagesize>.json.
+# Extra arguments are passed to JMH, e.g. ./run.sh CipherBenchmark -p size=4096 -t 1
+
+set -e
+cd "$(dirname "$0")"
+
+echo "Kernel page size: $(getconf PAGESIZE)"
+
+# 1. Build libucrypto.so and ucrypto.jar, then install the jar the benchmarks depend on
+(cd .. && ./build.sh)
+mvn -B -q install:install-file -Dfile=../../ai_build/lib/ucrypto.jar \
+    -DgroupId=com.ucrypto -DartifactId=ucrypto -Dversion=1.0-SNAPSHOT -Dpackaging=jar
+
+# 2. Build the benchmark jar
+mvn -B -q package
+
+# 3. Run; compare the JSON from a 4K kernel with one from a 64K kernel (see final.sh)
+java -Djava.library.path="$(cd ../../ai_build/lib && pwd)" -jar target/ucrypto-benchmarks.jar "$@"
@@ -0,0 +1,96 @@
+package com.ucrypto.bench;
+
+import com.ucrypto.UCryptoEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * encrypt and decrypt of one {@code size}-byte message per operation, through a new byte[]
+ * per call ({@code *Array}), into a reused byte[] ({@code encryptArrayInto}) and between
+ * preallocated direct buffers ({@code *Direct}).
+ * Each benchmark thread has its own message, so scores with more threads are aggregate
+ * throughput. {@link UCryptoBench} turns ops/s into GB/s. 256 MB messages are in
+ * {@link LargeMessageBenchmark}, since one copy of this state per thread would not fit.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CipherBenchmark {
+    static final int KEY_LENGTH = 32;
+
+    @Param({"jni", "ffm", "java"})
+    public String engine;
+
+    @Param({"16", "256", "4096", "65536", "1048576", "16777216"})
+    public int size;
+
+    private UCryptoEngine cipher;
+    private byte[] data;
+    private byte[] out;
+    private byte[] key;
+    private ByteBuffer src;
+    private ByteBuffer dst;
+    private ByteBuffer directKey;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        cipher = UCryptoEngine.forName(engine);
+        data = new byte[size];
+        out = new byte[size];
+        key = new byte[KEY_LENGTH];
+        ThreadLocalRandom.current().nextBytes(data);
+        ThreadLocalRandom.current().nextBytes(key);
+        src = ByteBuffer.allocateDirect(size).put(data);
+        dst = ByteBuffer.allocateDirect(size);
+        directKey = ByteBuffer.allocateDirect(KEY_LENGTH).put(key).flip();
+    }
+
+    @Benchmark
+    public byte[] encryptArray() {
+        return cipher.encrypt(data, key);
+    }
+
+    @Benchmark
+    public byte[] encryptArrayInto() {
+        cipher.encrypt(data, 0, out, 0, size, key);
+        return out;
+    }
+
+    @Benchmark
+    public byte[] decryptArray() {
+        return cipher.decrypt(data, key);
+    }
+
+    @Benchmark
+    public ByteBuffer encryptDirect() {
+        src.clear();
+        dst.clear();
+        cipher.encrypt(src, dst, directKey);
+        return dst;
+    }
+
+    @Benchmark
+    public ByteBuffer decryptDirect() {
+        src.clear();
+        dst.clear();
+        cipher.decrypt(src, dst, directKey);
+        return dst;
+    }
+}
@@ -0,0 +1,54 @@
+package com.ucrypto.bench;
+
+import com.ucrypto.UCrypto;
+import com.ucrypto.UCryptoKeyPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One key of {@code keyLength} bytes per operation, straight from getrandom
+ * ({@link UCrypto#generateKey}) and from a {@link UCryptoKeyPool} shared by all threads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class KeyBenchmark {
+    static final int POOL_CAPACITY = 1024;
+
+    @Param({"16", "32", "256", "4096"})
+    public int keyLength;
+
+    private UCrypto ucrypto;
+    private UCryptoKeyPool pool;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ucrypto = new UCrypto();
+        pool = new UCryptoKeyPool(keyLength, POOL_CAPACITY);
+    }
+
+    @Benchmark
+    public byte[] generateKey() {
+        return ucrypto.generateKey(keyLength);
+    }
+
+    @Benchmark
+    public byte[] keyPoolNext() {
+        return pool.next();
+    }
+}
@@ -0,0 +1,94 @@
+package com.ucrypto.bench;
+
+import com.ucrypto.UCryptoEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link CipherBenchmark} for a 256 MB message, single-threaded with one shared set of buffers.
+ * The arrays, the direct src/dst pair and the array each {@code encryptArray} call returns
+ * add up to about 768 MB of heap and 512 MB of direct memory, so the fork gets explicit limits
+ * and {@link UCryptoBench} only runs this with one thread.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xmx2g", "-XX:MaxDirectMemorySize=1g"})
+@Threads(1)
+@State(Scope.Benchmark)
+public class LargeMessageBenchmark {
+    @Param({"jni", "ffm", "java"})
+    public String engine;
+
+    @Param({"268435456"})
+    public int size;
+
+    private UCryptoEngine cipher;
+    private byte[] data;
+    private byte[] out;
+    private byte[] key;
+    private ByteBuffer src;
+    private ByteBuffer dst;
+    private ByteBuffer directKey;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        cipher = UCryptoEngine.forName(engine);
+        data = new byte[size];
+        out = new byte[size];
+        key = new byte[CipherBenchmark.KEY_LENGTH];
+        ThreadLocalRandom.current().nextBytes(data);
+        ThreadLocalRandom.current().nextBytes(key);
+        src = ByteBuffer.allocateDirect(size).put(data);
+        dst = ByteBuffer.allocateDirect(size);
+        directKey = ByteBuffer.allocateDirect(key.length).put(key).flip();
+    }
+
+    @Benchmark
+    public byte[] encryptArray() {
+        return cipher.encrypt(data, key);
+    }
+
+    @Benchmark
+    public byte[] encryptArrayInto() {
+        cipher.encrypt(data, 0, out, 0, size, key);
+        return out;
+    }
+
+    @Benchmark
+    public byte[] decryptArray() {
+        return cipher.decrypt(data, key);
+    }
+
+    @Benchmark
+    public ByteBuffer encryptDirect() {
+        src.clear();
+        dst.clear();
+        cipher.encrypt(src, dst, directKey);
+        return dst;
+    }
+
+    @Benchmark
+    public ByteBuffer decryptDirect() {
+        src.clear();
+        dst.clear();
+        cipher.decrypt(src, dst, directKey);
+        return dst;
+    }
+}
@@ -0,0 +1,217 @@
+package com.ucrypto.bench;
+
+import com.ucrypto.UCrypto;
+import com.ucrypto.UCryptoEngine;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.NoBenchmarksException;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.module.ModuleFinder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Runs the benchmarks (accepting the usual JMH command line, e.g. a name regex) once per
+ * XOR kernel and thread count, and writes {@code ucrypto-bench-<pagesize>.json}: the JMH
+ * JSON of every run plus a GB/s and allocation-rate summary, wrapped with the OS page size,
+ * kernel release and architecture, so runs on 4K and 64K page kernels can be diffed directly.
+ *
+ * <p>The kernel is picked once per JVM, so each one gets its own forks: {@code simd} runs the
+ * best native kernel with the Vector API enabled for the java engine, {@code scalar} forces
+ * the scalar native kernel and leaves the Vector API out. Choose with
+ * {@code -Dbench.kernels=simd,scalar}. Threads default to 1, 2, 4, ... up to the number of
+ * CPUs; pass {@code -t} to run a single count.
+ */
+public class UCryptoBench {
+    private static final String SIMD = "simd";
+    private static final String SCALAR = "scalar";
+    // The ffm engine is written against the JDK 17 incubator API, which later JDKs changed
+    private static final boolean FFM = Runtime.version().feature() == 17
+            && ModuleFinder.ofSystem().find("jdk.incubator.foreign").isPresent();
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cmd = new CommandLineOptions(args);
+        int pageSize = UCrypto.pageSize();
+        String[] kernels = System.getProperty("bench.kernels", SIMD + "," + SCALAR).split(",");
+        List<Integer> threadCounts = threadCounts(cmd);
+        String[] engines = engines();
+
+        StringBuilder runs = new StringBuilder();
+        List<Row> summary = new ArrayList<>();
+        for (String kernel : kernels) {
+            String kernelName = SCALAR.equals(kernel) ? SCALAR : UCrypto.implementation();
+            for (int threads : threadCounts) {
+                Path raw = Files.createTempFile("ucrypto-bench", ".json");
+                ChainedOptionsBuilder options = new OptionsBuilder()
+                        .parent(cmd)
+                        .threads(threads)
+                        .jvmArgsAppend(forkArgs(cmd, kernel))
+                        .addProfiler(GCProfiler.class)
+                        .resultFormat(ResultFormatType.JSON)
+                        .result(raw.toString());
+                if (!cmd.getParameter("engine").hasValue()) {
+                    options.param("engine", engines);
+                }
+                if (threads > 1) {
+                    // Sized for one thread; -t overrides its @Threads(1)
+                    options.exclude(LargeMessageBenchmark.class.getSimpleName());
+                }
+                Collection<RunResult> results;
+                try {
+                    results = new Runner(options.build()).run();
+                } catch (NoBenchmarksException e) {
+                    // Only LargeMessageBenchmark was selected
+                    Files.delete(raw);
+                    continue;
+                }
+
+                if (runs.length() > 0) {
+                    runs.append(",\n");
+                }
+                runs.append("    {\"kernel\": \"").append(kernelName)
+                        .append("\", \"threads\": ").append(threads)
+                        .append(", \"results\": ").append(Files.readString(raw).trim()).append("}");
+                Files.delete(raw);
+                for (RunResult r : results) {
+                    summary.add(new Row(kernelName, r));
+                }
+            }
+        }
+
+        Path out = Paths.get("ucrypto-bench-" + pageSize + ".json");
+        String summaryJson = summary.stream().map(Row::toJson).collect(Collectors.joining(",\n    "));
+        Files.writeString(out, "{\n"
+                + "  \"pageSize\": " + pageSize + ",\n"
+                + "  \"kernel\": \"" + System.getProperty("os.version") + "\",\n"
+                + "  \"arch\": \"" + System.getProperty("os.arch") + "\",\n"
+                + "  \"cpus\": " + Runtime.getRuntime().availableProcessors() + ",\n"
+                + "  \"jdk\": \"" + Runtime.version() + "\",\n"
+                + "  \"implementation\": \"" + UCrypto.implementation() + "\",\n"
+                + "  \"summary\": [\n    " + summaryJson + "\n  ],\n"
+                + "  \"runs\": [\n" + runs + "\n  ]\n"
+                + "}\n");
+
+        System.out.println();
+        System.out.printf("Page size %d, %s%n", pageSize, UCrypto.implementation());
+        System.out.printf("%-8s %4s %-34s %-5s %10s %10s %12s %12s%n",
+                "kernel", "thr", "benchmark", "eng", "bytes", "GB/s", "alloc MB/s", "alloc B/op");
+        for (Row row : summary) {
+            System.out.println(row.toLine());
+        }
+        System.out.println("Results written to " + out.toAbsolutePath());
+    }
+
+    /** 1, 2, 4, ... up to and including the CPU count, unless -t was given. */
+    private static List<Integer> threadCounts(CommandLineOptions cmd) {
+        List<Integer> counts = new ArrayList<>();
+        if (cmd.getThreads().hasValue()) {
+            counts.add(cmd.getThreads().get());
+            return counts;
+        }
+        int cpus = Runtime.getRuntime().availableProcessors();
+        for (int t = 1; t < cpus; t *= 2) {
+            counts.add(t);
+        }
+        counts.add(cpus);
+        return counts;
+    }
+
+    /** jni and java always; ffm only on a JDK its incubator binding can run on. */
+    private static String[] engines() {
+        if (FFM) {
+            return new String[] {UCryptoEngine.JNI, UCryptoEngine.FFM, UCryptoEngine.JAVA};
+        }
+        System.out.println("FFM engine not available on JDK " + Runtime.version().feature() + ", skipping it");
+        return new String[] {UCryptoEngine.JNI, UCryptoEngine.JAVA};
+    }
+
+    private static String[] forkArgs(CommandLineOptions cmd, String kernel) {
+        List<String> args = new ArrayList<>();
+        if (cmd.getJvmArgsAppend().hasValue()) {
+            args.addAll(cmd.getJvmArgsAppend().get());
+        }
+        // Measure the JNI byte[] path itself rather than UCrypto's small-input Java shortcut
+        args.add("-Ducrypto.javaCrossover=0");
+        List<String> modules = new ArrayList<>();
+        if (SCALAR.equals(kernel)) {
+            args.add("-Ducrypto.impl=scalar");
+        } else {
+            modules.add("jdk.incubator.vector");
+        }
+        if (FFM) {
+            modules.add("jdk.incubator.foreign");
+        }
+        if (!modules.isEmpty()) {
+            args.add("--add-modules=" + String.join(",", modules));
+        }
+        // Lets the ffm engine call the restricted linker methods; newer JDKs also want it for JNI
+        args.add("--enable-native-access=ALL-UNNAMED");
+        return args.toArray(new String[0]);
+    }
+
+    /** A GC profiler result; older JMH versions prefix the label with a middle dot. */
+    private static double secondary(RunResult r, String label) {
+        for (Map.Entry<String, Result> e : r.getSecondaryResults().entrySet()) {
+            if (e.getKey().equals(label) || e.getKey().equals("·" + label)) {
+                return e.getValue().getScore();
+            }
+        }
+        return Double.NaN;
+    }
+
+    /** One benchmark result, with ops/s converted to GB/s using the message or key size. */
+    private static final class Row {
+        final String kernel;
+        final int threads;
+        final String benchmark;
+        final String engine;
+        final long bytes;
+        final double gbPerSecond;
+        final double allocMBPerSecond;
+        final double allocBytesPerOp;
+
+        Row(String kernel, RunResult r) {
+            BenchmarkParams params = r.getParams();
+            String name = params.getBenchmark();
+            this.kernel = kernel;
+            this.threads = params.getThreads();
+            this.benchmark = name.substring(name.lastIndexOf('.', name.lastIndexOf('.') - 1) + 1);
+            this.engine = params.getParam("engine") != null ? params.getParam("engine") : "-";
+            this.bytes = Long.parseLong(params.getParam("size") != null ? params.getParam("size") : params.getParam("keyLength"));
+            this.gbPerSecond = r.getPrimaryResult().getScore() * bytes / 1e9;
+            this.allocMBPerSecond = secondary(r, "gc.alloc.rate");
+            this.allocBytesPerOp = secondary(r, "gc.alloc.rate.norm");
+        }
+
+        String toJson() {
+            return String.format(Locale.ROOT,
+                    "{\"kernel\": \"%s\", \"threads\": %d, \"benchmark\": \"%s\", \"engine\": \"%s\", \"bytes\": %d, "
+                            + "\"gbPerSecond\": %.3f, \"allocMBPerSecond\": %s, \"allocBytesPerOp\": %s}",
+                    kernel, threads, benchmark, engine, bytes, gbPerSecond,
+                    json(allocMBPerSecond), json(allocBytesPerOp));
+        }
+
+        String toLine() {
+            return String.format(Locale.ROOT, "%-8s %4d %-34s %-5s %10d %10.3f %12.1f %12.1f",
+                    kernel, threads, benchmark, engine, bytes, gbPerSecond, allocMBPerSecond, allocBytesPerOp);
+        }
+
+        private static String json(double v) {
+            return Double.isNaN(v) ? "null" : String.format(Locale.ROOT, "%.1f", v);
+        }
+    }
+}
@@ -16,11 +16,11 @@ mkdir -p ../ai_build/lib
 
 # Compile Java class and generate JNI header
 echo "Compiling Java classes and generating JNI header..."
-javac -h src/main/native -d ../ai_build/classes src/main/java/com/ucrypto/UCrypto.java
+javac --add-modules jdk.incubator.vector,jdk.incubator.foreign -h src/main/native -d ../ai_build/classes $(find src/main/java -name "*.java")
 
 # Compile native library
 echo "Compiling native library..."
-g++ -fPIC -I"$JAVA_HOME/include" -I"$JAVA_HOME/include/linux" -std=c++11 -Wall \
+g++ -O2 -fPIC -I"$JAVA_HOME/include" -I"$JAVA_HOME/include/linux" -std=c++11 -Wall \
     -shared -o ../ai_build/lib/libucrypto.so src/main/native/ucrypto.cpp
 
 # Create JAR file
@@ -0,0 +1,95 @@
+package com.ucrypto;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A key and the current position in the repeating keystream, shared by the stream and channel wrappers
+ */
+final class KeyStream {
+    static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private static final byte[] ZEROS = new byte[4096];
+
+    private final UCrypto crypto = new UCrypto();
+    private final ByteBuffer key;
+    // Heap copy for byte[] callers, which the native kernel reads in place
+    private final byte[] keyBytes;
+    private long position;
+
+    KeyStream(byte[] key) {
+        if (key.length == 0) {
+            throw new IllegalArgumentException("key is empty");
+        }
+        this.key = UCryptoBufferPool.acquire(key.length).put(key).flip();
+        this.keyBytes = key.clone();
+    }
+
+    /**
+     * XORs the remaining bytes of src into dst (both direct, possibly the same) and moves the key position on
+     */
+    void apply(ByteBuffer src, ByteBuffer dst) {
+        int length = src.remaining();
+        crypto.encrypt(src, dst, key, position);
+        position += length;
+    }
+
+    /**
+     * XORs length bytes of b at off in place and moves the key position on
+     */
+    void apply(byte[] b, int off, int length) {
+        UCrypto.xor(b, off, b, off, length, keyBytes, position);
+        position += length;
+    }
+
+    /**
+     * Moves the key position on over n bytes that were dropped rather than processed
+     */
+    void skip(long n) {
+        position += n;
+    }
+
+    /**
+     * Bytes processed so far
+     */
+    long position() {
+        return position;
+    }
+
+    /**
+     * Wipes the key and the caller's buffer, which held plaintext, and hands both back to the pool;
+     * neither may be used afterwards
+     */
+    void release(ByteBuffer buffer) {
+        wipe(buffer);
+        release();
+        UCryptoBufferPool.release(buffer);
+    }
+
+    /**
+     * Wipes the key and hands it back to the pool, for wrappers without a pooled buffer
+     */
+    void release() {
+        Arrays.fill(keyBytes, (byte) 0);
+        wipe(key);
+        UCryptoBufferPool.release(key);
+    }
+
+    // Zeroes the whole capacity, since the limit says nothing about what earlier calls filled
+    private static void wipe(ByteBuffer buffer) {
+        ByteBuffer b = buffer.duplicate().clear();
+        while (b.hasRemaining()) {
+            b.put(ZEROS, 0, Math.min(ZEROS.length, b.remaining()));
+        }
+    }
+
+    /**
+     * Borrows a cleared buffer of at least size bytes; its capacity is the pool's size class
+     */
+    static ByteBuffer buffer(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("buffer size must be positive: " + size);
+        }
+        return UCryptoBufferPool.acquire(size).clear();
+    }
+}
@@ -1,21 +1,125 @@
 package com.ucrypto;
 
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.SecureRandom;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
 /**
  * UCrypto - A simple JNI-enabled cryptography library
+ *
+ * If libucrypto cannot be loaded, every method falls back to {@link UCryptoJava} (and
+ * SecureRandom for keys), so the same code runs on hosts without the native library.
  */
-public class UCrypto {
+public class UCrypto implements UCryptoEngine {
+    /**
+     * Payloads smaller than this are encrypted on the calling thread by encryptParallel
+     */
+    public static final int PARALLEL_THRESHOLD = 1 << 20;
+
+    /**
+     * Work for one fork/join task; its chunks are encrypted one native call each
+     */
+    private static final int LEAF_BYTES = 256 * 1024;
+
+    /**
+     * Most bytes of a byte[] processed per native call, i.e. while the arrays are pinned
+     */
+    public static final int CRITICAL_CHUNK = 1 << 20;
+
+    /**
+     * Bytes of input and output mapped at a time by encryptFile
+     */
+    public static final long DEFAULT_MAP_WINDOW = 64L << 20;
+
+    /**
+     * byte[] inputs up to this many bytes are encrypted in Java, skipping the JNI transition
+     *
+     * The JNI byte[] path pins, copies and allocates, so Java wins up to a few hundred bytes
+     * with a scalar loop and up to tens of KB with the Vector API. The defaults sit below the
+     * crossover measured on an AVX2 host; set -Ducrypto.javaCrossover after running
+     * {@link UCryptoJava#main} on the target host.
+     */
+    public static final int JAVA_CROSSOVER = Integer.getInteger("ucrypto.javaCrossover",
+            UCryptoJava.VECTOR ? 16 * 1024 : 256);
+
+    private static final boolean NATIVE;
+    private static final String IMPLEMENTATION;
+    private static final UCryptoJava JAVA_ENGINE = new UCryptoJava();
+
     static {
-        System.loadLibrary("ucrypto");
+        boolean loaded;
+        try {
+            System.loadLibrary("ucrypto");
+            loaded = true;
+        } catch (UnsatisfiedLinkError e) {
+            // Not an error for callers; isNative() reports it
+            System.getLogger(UCrypto.class.getName()).log(System.Logger.Level.DEBUG,
+                    "libucrypto not loaded, using the pure-Java implementation", e);
+            loaded = false;
+        }
+        NATIVE = loaded;
+        IMPLEMENTATION = loaded ? selectImplementation(System.getProperty("ucrypto.impl")) : UCryptoJava.implementation();
+    }
+
+    /**
+     * Returns the XOR kernel chosen for this CPU when the library was loaded
+     *
+     * One of "avx2", "sse2", "sve", "neon" or "scalar". Run with -Ducrypto.impl=scalar (or
+     * any other supported name) to force a kernel, e.g. to compare SIMD against scalar.
+     * Without the native library this is "java-vector" or "java-scalar".
+     *
+     * byte[] inputs up to {@link #JAVA_CROSSOVER} bytes never reach this kernel; they run on
+     * {@link UCryptoJava#implementation()}. Direct buffers always use it.
+     *
+     * @return The name of the active kernel
+     */
+    public static String implementation() {
+        return IMPLEMENTATION;
+    }
+
+    /**
+     * Returns true if libucrypto was loaded, false if the pure-Java fallback is in use
+     */
+    public static boolean isNative() {
+        return NATIVE;
+    }
+
+    /**
+     * "jni" when libucrypto is loaded, otherwise "java"
+     *
+     * Even with the library loaded, byte[] inputs up to {@link #JAVA_CROSSOVER} bytes are
+     * encrypted in Java, because that is faster than crossing JNI for them. Run with
+     * -Ducrypto.javaCrossover=0 to send every input through JNI, e.g. to benchmark it.
+     */
+    @Override
+    public String name() {
+        return NATIVE ? JNI : JAVA;
     }
 
     /**
      * Encrypts the given data using a simple XOR algorithm
+     *
+     * Inputs up to {@link #JAVA_CROSSOVER} bytes are encrypted in Java; see {@link #name()}.
      * 
      * @param data The data to encrypt
      * @param key The encryption key
      * @return The encrypted data
      */
-    public native byte[] encrypt(byte[] data, byte[] key);
+    @Override
+    public byte[] encrypt(byte[] data, byte[] key) {
+        if (!NATIVE || data.length <= JAVA_CROSSOVER) {
+            return JAVA_ENGINE.encrypt(data, key);
+        }
+        return encryptArray(data, key);
+    }
 
     /**
      * Decrypts the given data using a simple XOR algorithm
@@ -24,13 +128,426 @@ public class UCrypto {
      * @param key The decryption key
      * @return The decrypted data
      */
-    public native byte[] decrypt(byte[] data, byte[] key);
+    @Override
+    public byte[] decrypt(byte[] data, byte[] key) {
+        return encrypt(data, key);
+    }
+
+    /**
+     * Encrypts length bytes of src into a caller-provided array, with no result allocation
+     *
+     * Above {@link #JAVA_CROSSOVER} the arrays are pinned for the native kernel rather than
+     * copied, at most {@link #CRITICAL_CHUNK} bytes per native call so garbage collection is
+     * never held off for long. dst may be src for in-place encryption.
+     *
+     * @param src The data to encrypt
+     * @param srcOffset Offset of the first byte to encrypt
+     * @param dst Receives the encrypted data
+     * @param dstOffset Where the first encrypted byte is stored
+     * @param length The number of bytes to encrypt
+     * @param key The encryption key
+     */
+    @Override
+    public void encrypt(byte[] src, int srcOffset, byte[] dst, int dstOffset, int length, byte[] key) {
+        Objects.checkFromIndexSize(srcOffset, length, src.length);
+        Objects.checkFromIndexSize(dstOffset, length, dst.length);
+        if (key.length == 0) {
+            throw new IllegalArgumentException("key is empty");
+        }
+        xor(src, srcOffset, dst, dstOffset, length, key, 0);
+    }
+
+    /**
+     * {@link #encrypt(byte[], int, byte[], int, int, byte[])} starting keyPosition bytes into the
+     * repeating keystream, for the stream wrappers; arguments are not checked
+     */
+    static void xor(byte[] src, int srcOffset, byte[] dst, int dstOffset, int length, byte[] key, long keyPosition) {
+        if (!NATIVE || length <= JAVA_CROSSOVER) {
+            UCryptoJava.xor(src, srcOffset, dst, dstOffset, length, key, 0, key.length, (int) (keyPosition % key.length));
+            return;
+        }
+        for (int done = 0; done < length; done += CRITICAL_CHUNK) {
+            xorArray0(src, srcOffset + done, dst, dstOffset + done, Math.min(CRITICAL_CHUNK, length - done),
+                    key, (int) ((keyPosition + done) % key.length));
+        }
+    }
 
     /**
-     * Generates a random key of the specified length
+     * Decrypts length bytes of src into a caller-provided array; see
+     * {@link #encrypt(byte[], int, byte[], int, int, byte[])}
+     */
+    @Override
+    public void decrypt(byte[] src, int srcOffset, byte[] dst, int dstOffset, int length, byte[] key) {
+        encrypt(src, srcOffset, dst, dstOffset, length, key);
+    }
+
+    /**
+     * Generates a random key of the specified length from the kernel CSPRNG (getrandom)
      * 
      * @param length The length of the key to generate
      * @return A random key
      */
-    public native byte[] generateKey(int length);
+    public byte[] generateKey(int length) {
+        if (!NATIVE) {
+            byte[] key = new byte[length];
+            Fallback.RANDOM.nextBytes(key);
+            return key;
+        }
+        return generateKey0(length);
+    }
+
+    /**
+     * Generates count random keys of the given length into one direct buffer with a single native call
+     *
+     * Key i occupies bytes [i * length, (i + 1) * length). Bytes come from getrandom(), like
+     * {@link #generateKey(int)}. The buffer is borrowed from {@link UCryptoBufferPool}; wipe it
+     * and hand it back with {@link UCryptoBufferPool#release} once the keys are used up.
+     *
+     * @param count The number of keys
+     * @param length The length of each key
+     * @return A direct buffer with position 0 and limit count * length, filled with random bytes
+     */
+    public ByteBuffer generateKeys(int count, int length) {
+        if (count < 0 || length < 0) {
+            throw new IllegalArgumentException("count and length must not be negative");
+        }
+        ByteBuffer keys = UCryptoBufferPool.acquire(Math.multiplyExact(count, length));
+        fillRandom(keys, 0, keys.limit());
+        return keys;
+    }
+
+    /**
+     * Encrypts {@code src} into {@code dst} without copying through the Java heap
+     *
+     * Reads src.remaining() bytes from src's position and writes the same number of bytes
+     * at dst's position, then advances both positions. The key is the remaining bytes of
+     * {@code key} and its position is left unchanged. All three buffers must be direct;
+     * src and dst may be the same buffer.
+     *
+     * @param src The data to encrypt
+     * @param dst Receives the encrypted data
+     * @param key The encryption key
+     */
+    @Override
+    public void encrypt(ByteBuffer src, ByteBuffer dst, ByteBuffer key) {
+        encrypt(src, dst, key, 0);
+    }
+
+    /**
+     * Encrypts {@code src} into {@code dst} as if it started keyPosition bytes into a longer message
+     *
+     * The first byte is XORed with key byte keyPosition % keyLength, so a stream can be
+     * encrypted piece by piece, or from any offset, with the same result as in one call.
+     *
+     * @param keyPosition Offset of src's first byte within the whole message
+     */
+    @Override
+    public void encrypt(ByteBuffer src, ByteBuffer dst, ByteBuffer key, long keyPosition) {
+        if (keyPosition < 0) {
+            throw new IllegalArgumentException("negative keyPosition: " + keyPosition);
+        }
+        int length = src.remaining();
+        if (dst.remaining() < length) {
+            throw new IllegalArgumentException("dst has " + dst.remaining() + " bytes remaining, need " + length);
+        }
+        checkDirect(src, dst, key);
+        xor(src, src.position(), dst, dst.position(), length, key, key.position(), key.remaining(),
+                (int) (keyPosition % key.remaining()));
+        src.position(src.position() + length);
+        if (dst != src) {
+            dst.position(dst.position() + length);
+        }
+    }
+
+    /**
+     * Decrypts {@code src} into {@code dst}; see {@link #encrypt(ByteBuffer, ByteBuffer, ByteBuffer)}
+     */
+    @Override
+    public void decrypt(ByteBuffer src, ByteBuffer dst, ByteBuffer key) {
+        encrypt(src, dst, key);
+    }
+
+    /**
+     * Encrypts the remaining bytes of a direct buffer in place and advances its position
+     *
+     * @param data The data to encrypt, overwritten with the encrypted data
+     * @param key The encryption key
+     */
+    public void encryptInPlace(ByteBuffer data, ByteBuffer key) {
+        encrypt(data, data, key);
+    }
+
+    /**
+     * Decrypts the remaining bytes of a direct buffer in place and advances its position
+     */
+    public void decryptInPlace(ByteBuffer data, ByteBuffer key) {
+        encrypt(data, data, key);
+    }
+
+    /**
+     * Encrypts a large direct buffer on all cores of the common ForkJoinPool
+     *
+     * Same contract as {@link #encrypt(ByteBuffer, ByteBuffer, ByteBuffer)}. The payload is cut
+     * into chunks of one OS page, aligned to page boundaries in dst so no two threads write the
+     * same page, and each chunk starts at the matching key offset so the output is identical
+     * to the single-threaded one. Payloads below {@link #PARALLEL_THRESHOLD} are not split.
+     *
+     * @param src The data to encrypt
+     * @param dst Receives the encrypted data
+     * @param key The encryption key
+     */
+    public void encryptParallel(ByteBuffer src, ByteBuffer dst, ByteBuffer key) {
+        encryptParallel(src, dst, key, ForkJoinPool.commonPool(), pageSize());
+    }
+
+    /**
+     * Encrypts a large direct buffer in chunks of chunkSize bytes on the given pool
+     *
+     * @param chunkSize Bytes per native call, a power of two; chunks are aligned to it in dst
+     */
+    public void encryptParallel(ByteBuffer src, ByteBuffer dst, ByteBuffer key, ForkJoinPool pool, int chunkSize) {
+        int length = src.remaining();
+        if (length < PARALLEL_THRESHOLD) {
+            encrypt(src, dst, key);
+            return;
+        }
+        if (dst.remaining() < length) {
+            throw new IllegalArgumentException("dst has " + dst.remaining() + " bytes remaining, need " + length);
+        }
+        if (chunkSize <= 0 || Integer.bitCount(chunkSize) != 1) {
+            throw new IllegalArgumentException("chunkSize must be a power of two: " + chunkSize);
+        }
+        checkDirect(src, dst, key);
+        // The first chunk runs up to dst's next chunk boundary, so every later one is aligned
+        int head = (chunkSize - dst.alignmentOffset(dst.position(), chunkSize)) % chunkSize;
+        pool.invoke(new XorTask(src, src.position(), dst, dst.position(), key, key.position(), key.remaining(),
+                head, chunkSize, 0, length));
+        src.position(src.position() + length);
+        if (dst != src) {
+            dst.position(dst.position() + length);
+        }
+    }
+
+    /**
+     * Decrypts a large direct buffer on all cores; see {@link #encryptParallel(ByteBuffer, ByteBuffer, ByteBuffer)}
+     */
+    public void decryptParallel(ByteBuffer src, ByteBuffer dst, ByteBuffer key) {
+        encryptParallel(src, dst, key);
+    }
+
+    /**
+     * Encrypts a file into another through memory mappings, without reading it onto the Java heap
+     *
+     * Input and output are mapped natively in windows of {@link #DEFAULT_MAP_WINDOW} bytes with
+     * MADV_SEQUENTIAL and XORed from one mapping straight into the other. out is created or
+     * truncated to the size of in; if both name the same file it is encrypted in place.
+     * The input must not be truncated while this runs.
+     *
+     * @param in The file to encrypt
+     * @param out Receives the encrypted file
+     * @param key The encryption key
+     */
+    public void encryptFile(Path in, Path out, byte[] key) throws IOException {
+        encryptFile(in, out, key, DEFAULT_MAP_WINDOW);
+    }
+
+    /**
+     * Encrypts a file mapping windowBytes at a time, rounded up to a multiple of the OS page size
+     */
+    public void encryptFile(Path in, Path out, byte[] key, long windowBytes) throws IOException {
+        if (key.length == 0) {
+            throw new IllegalArgumentException("key is empty");
+        }
+        long page = pageSize();
+        long window = Math.max(page, (windowBytes + page - 1) / page * page);
+        if (!NATIVE) {
+            xorFileJava(in, out, key);
+            return;
+        }
+        xorFile(in.toAbsolutePath().toString(), out.toAbsolutePath().toString(), key, window);
+    }
+
+    /**
+     * Decrypts a file into another; see {@link #encryptFile(Path, Path, byte[])}
+     */
+    public void decryptFile(Path in, Path out, byte[] key) throws IOException {
+        encryptFile(in, out, key, DEFAULT_MAP_WINDOW);
+    }
+
+    /**
+     * Returns the OS page size, i.e. getconf PAGESIZE
+     */
+    public static int pageSize() {
+        return NATIVE ? pageSize0() : Fallback.PAGE_SIZE;
+    }
+
+    private static void checkDirect(ByteBuffer src, ByteBuffer dst, ByteBuffer key) {
+        if (!src.isDirect() || !dst.isDirect() || !key.isDirect()) {
+            throw new IllegalArgumentException("ByteBuffer arguments must be direct");
+        }
+        if (dst.isReadOnly()) {
+            throw new java.nio.ReadOnlyBufferException();
+        }
+        if (!key.hasRemaining()) {
+            throw new IllegalArgumentException("key is empty");
+        }
+    }
+
+    /**
+     * XORs length bytes at src+srcOffset with the repeating key and stores them at dst+dstOffset
+     */
+    private static void xor(ByteBuffer src, int srcOffset, ByteBuffer dst, int dstOffset, int length,
+                            ByteBuffer key, int keyOffset, int keyLength, int keyPhase) {
+        if (NATIVE) {
+            xor0(src, srcOffset, dst, dstOffset, length, key, keyOffset, keyLength, keyPhase);
+        } else {
+            UCryptoJava.xor(src, srcOffset, dst, dstOffset, length, key, keyOffset, keyLength, keyPhase);
+        }
+    }
+
+    /**
+     * Fills length bytes of a direct buffer from offset with CSPRNG output
+     */
+    static void fillRandom(ByteBuffer buffer, int offset, int length) {
+        if (NATIVE) {
+            fillRandom0(buffer, offset, length);
+            return;
+        }
+        byte[] bytes = new byte[length];
+        Fallback.RANDOM.nextBytes(bytes);
+        buffer.put(offset, bytes);
+    }
+
+    /**
+     * encryptFile without the native library: streams the file through a direct buffer
+     */
+    private static void xorFileJava(Path in, Path out, byte[] key) throws IOException {
+        boolean inPlace = Files.exists(out) && Files.isSameFile(in, out);
+        ByteBuffer keyBuffer = ByteBuffer.wrap(key);
+        ByteBuffer buffer = UCryptoBufferPool.acquire(1 << 20);
+        try (FileChannel src = inPlace
+                ? FileChannel.open(in, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(in, StandardOpenOption.READ);
+             FileChannel dst = inPlace ? src : FileChannel.open(out, StandardOpenOption.CREATE,
+                     StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long position = 0;
+            while (true) {
+                buffer.clear();
+                while (buffer.hasRemaining() && src.read(buffer, position + buffer.position()) >= 0) {
+                    // Fill the whole buffer unless the file ends first
+                }
+                if (buffer.position() == 0) {
+                    break;
+                }
+                buffer.flip();
+                UCryptoJava.xor(buffer, 0, buffer, 0, buffer.limit(), keyBuffer, 0, key.length,
+                        (int) (position % key.length));
+                while (buffer.hasRemaining()) {
+                    dst.write(buffer, position + buffer.position());
+                }
+                position += buffer.limit();
+            }
+        } finally {
+            UCryptoBufferPool.release(buffer);
+        }
+    }
+
+    /**
+     * Switches to the named kernel if this CPU supports it, otherwise to the best one
+     */
+    private static native String selectImplementation(String requested);
+
+    /**
+     * The JNI byte[] path, regardless of JAVA_CROSSOVER
+     */
+    static native byte[] encryptArray(byte[] data, byte[] key);
+
+    private static native byte[] generateKey0(int length);
+
+    private static native int pageSize0();
+
+    private static native void xor0(ByteBuffer src, int srcOffset, ByteBuffer dst, int dstOffset, int length,
+                                    ByteBuffer key, int keyOffset, int keyLength, int keyPhase);
+
+    /**
+     * XORs length bytes of src at srcOffset into dst at dstOffset through pinned arrays
+     */
+    private static native void xorArray0(byte[] src, int srcOffset, byte[] dst, int dstOffset, int length,
+                                         byte[] key, int keyPhase);
+
+    private static native void fillRandom0(ByteBuffer buffer, int offset, int length);
+
+    /**
+     * XORs the file at inPath into outPath, mapping window bytes (a page multiple) at a time
+     */
+    private static native void xorFile(String inPath, String outPath, byte[] key, long window) throws IOException;
+
+    /**
+     * State only needed when the native library is missing
+     */
+    private static final class Fallback {
+        static final SecureRandom RANDOM = new SecureRandom();
+        static final int PAGE_SIZE = unsafePageSize();
+
+        private static int unsafePageSize() {
+            try {
+                Field f = Class.forName("sun.misc.Unsafe").getDeclaredField("theUnsafe");
+                f.setAccessible(true);
+                Object unsafe = f.get(null);
+                return (int) unsafe.getClass().getMethod("pageSize").invoke(unsafe);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                return 4096;
+            }
+        }
+    }
+
+    /**
+     * Encrypts bytes [from, to) of a payload; chunk boundaries sit at head + n * chunkSize
+     */
+    private static final class XorTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final ByteBuffer src, dst, key;
+        private final int srcOffset, dstOffset, keyOffset, keyLength;
+        private final int head, chunkSize, from, to;
+
+        XorTask(ByteBuffer src, int srcOffset, ByteBuffer dst, int dstOffset, ByteBuffer key, int keyOffset,
+                int keyLength, int head, int chunkSize, int from, int to) {
+            this.src = src;
+            this.srcOffset = srcOffset;
+            this.dst = dst;
+            this.dstOffset = dstOffset;
+            this.key = key;
+            this.keyOffset = keyOffset;
+            this.keyLength = keyLength;
+            this.head = head;
+            this.chunkSize = chunkSize;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > LEAF_BYTES) {
+                int mid = from + (to - from) / 2;
+                if (mid > head) {
+                    mid = head + (mid - head) / chunkSize * chunkSize;
+                }
+                if (mid > from && mid < to) {
+                    invokeAll(split(from, mid), split(mid, to));
+                    return;
+                }
+            }
+            for (int pos = from; pos < to; ) {
+                int end = pos < head ? head : head + ((pos - head) / chunkSize + 1) * chunkSize;
+                end = Math.min(end, to);
+                xor(src, srcOffset + pos, dst, dstOffset + pos, end - pos, key, keyOffset, keyLength, pos % keyLength);
+                pos = end;
+            }
+        }
+
+        private XorTask split(int from, int to) {
+            return new XorTask(src, srcOffset, dst, dstOffset, key, keyOffset, keyLength, head, chunkSize, from, to);
+        }
+    }
 }
@@ -0,0 +1,252 @@
+package com.ucrypto;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-thread pool of page-aligned direct buffers in power-of-two size classes
+ *
+ * Allocating a direct buffer zeroes it, reserves native memory and registers a cleaner, which
+ * costs more than encrypting tens of KB. The stream and channel wrappers, generateKeys and the
+ * file fallback borrow their buffers here instead, so in steady state opening and closing
+ * streams allocates no direct memory. Every buffer starts on a page boundary.
+ *
+ * Each thread keeps free buffers per size class, from one page up to {@link #MAX_POOLED} bytes:
+ * up to {@link #BUFFERS_PER_CLASS} of each class below {@link #LARGE_BUFFER} bytes, one of each
+ * larger class, and never more than {@link #MAX_RETAINED_PER_THREAD} bytes in all. Larger
+ * requests are allocated every time and never kept. A buffer released on another thread joins
+ * that thread's pool, and a thread's free buffers are collected with the thread, so threads that
+ * live for only a few tasks get few hits. The hit and miss counters cover all threads.
+ *
+ * The pool remembers, weakly, every buffer it created. Only those are taken back, and releasing
+ * one that is not currently borrowed throws, so a double release cannot hand one buffer to two
+ * borrowers.
+ */
+public final class UCryptoBufferPool {
+    /**
+     * Largest buffer kept for reuse
+     */
+    public static final int MAX_POOLED = 16 << 20;
+
+    /**
+     * Free buffers kept per size class and thread, for classes below {@link #LARGE_BUFFER}
+     */
+    public static final int BUFFERS_PER_CLASS = 4;
+
+    /**
+     * Smallest size class of which a thread keeps only one free buffer
+     */
+    public static final int LARGE_BUFFER = 1 << 20;
+
+    /**
+     * Most bytes of free buffers one thread keeps
+     */
+    public static final long MAX_RETAINED_PER_THREAD = 16 << 20;
+
+    private static final int PAGE_SIZE = UCrypto.pageSize();
+    private static final int MIN_SHIFT = Integer.numberOfTrailingZeros(PAGE_SIZE);
+    private static final int CLASSES = Integer.numberOfTrailingZeros(MAX_POOLED) - MIN_SHIFT + 1;
+    private static final ThreadLocal<Free> FREE = ThreadLocal.withInitial(Free::new);
+    private static final Registry REGISTRY = new Registry();
+    private static final LongAdder HITS = new LongAdder();
+    private static final LongAdder MISSES = new LongAdder();
+
+    private UCryptoBufferPool() {
+    }
+
+    /**
+     * Borrows a page-aligned direct buffer with position 0 and limit size
+     *
+     * The capacity is size rounded up to a power of two of at least one page, and the
+     * contents are whatever the previous borrower left.
+     *
+     * @param size The number of bytes needed
+     */
+    public static ByteBuffer acquire(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("negative size: " + size);
+        }
+        int sizeClass = sizeClass(size);
+        if (sizeClass >= CLASSES) {
+            MISSES.increment();
+            return allocate(size).limit(size);
+        }
+        Free free = FREE.get();
+        int n = free.counts[sizeClass];
+        if (n > 0) {
+            Tag tag = free.tags[sizeClass][--n];
+            free.tags[sizeClass][n] = null;
+            free.counts[sizeClass] = n;
+            ByteBuffer buffer = tag.pinned;
+            tag.pinned = null;
+            free.retained -= buffer.capacity();
+            tag.state = Tag.BORROWED;
+            HITS.increment();
+            return buffer.clear().limit(size);
+        }
+        MISSES.increment();
+        ByteBuffer buffer = allocate(PAGE_SIZE << sizeClass);
+        REGISTRY.add(buffer);
+        return buffer.limit(size);
+    }
+
+    /**
+     * Returns a buffer for reuse by this thread
+     *
+     * Buffers the pool did not create, such as slices or duplicates of a borrowed buffer or
+     * requests above {@link #MAX_POOLED}, are ignored and left to the garbage collector, as are
+     * buffers that would take this thread over its limits. Neither the caller nor anything
+     * holding a slice of the buffer may use it afterwards. A release after the buffer has been
+     * borrowed again cannot be told apart from a legitimate one, so it must not happen.
+     *
+     * @throws IllegalStateException if the buffer has already been released
+     */
+    public static void release(ByteBuffer buffer) {
+        if (!buffer.isDirect()) {
+            return;
+        }
+        Tag tag = REGISTRY.find(buffer);
+        if (tag == null) {
+            return;
+        }
+        if (!Tag.STATE.compareAndSet(tag, Tag.BORROWED, Tag.RELEASED)) {
+            throw new IllegalStateException("buffer released twice");
+        }
+        int capacity = buffer.capacity();
+        int sizeClass = Integer.numberOfTrailingZeros(capacity) - MIN_SHIFT;
+        Free free = FREE.get();
+        int n = free.counts[sizeClass];
+        int limit = capacity < LARGE_BUFFER ? BUFFERS_PER_CLASS : 1;
+        if (n < limit && free.retained + capacity <= MAX_RETAINED_PER_THREAD) {
+            tag.pinned = buffer;
+            free.tags[sizeClass][n] = tag;
+            free.counts[sizeClass] = n + 1;
+            free.retained += capacity;
+        }
+        // Otherwise it stays RELEASED until collected, so releasing it again still throws
+    }
+
+    /**
+     * Number of acquire calls served from a pool
+     */
+    public static long hits() {
+        return HITS.sum();
+    }
+
+    /**
+     * Number of acquire calls that had to allocate a new buffer
+     */
+    public static long misses() {
+        return MISSES.sum();
+    }
+
+    // Index of the smallest class holding size bytes, CLASSES if it is above MAX_POOLED
+    private static int sizeClass(int size) {
+        if (size <= PAGE_SIZE) {
+            return 0;
+        }
+        if (size > MAX_POOLED) {
+            return CLASSES;
+        }
+        return 32 - Integer.numberOfLeadingZeros(size - 1) - MIN_SHIFT;
+    }
+
+    private static ByteBuffer allocate(int capacity) {
+        // alignedSlice trims both ends to page boundaries, so allocate one page more than whole pages
+        int pages = (int) (((long) capacity + PAGE_SIZE - 1) / PAGE_SIZE);
+        ByteBuffer raw = ByteBuffer.allocateDirect(Math.multiplyExact(pages + 1, PAGE_SIZE));
+        return raw.alignedSlice(PAGE_SIZE).limit(capacity).slice();
+    }
+
+    private static final class Free {
+        final Tag[][] tags = new Tag[CLASSES][BUFFERS_PER_CLASS];
+        final int[] counts = new int[CLASSES];
+        long retained;
+    }
+
+    // A buffer the pool created; weak, so borrowed buffers that are never released can still be collected
+    private static final class Tag extends WeakReference<ByteBuffer> {
+        static final int BORROWED = 0;
+        static final int RELEASED = 1;
+        static final AtomicIntegerFieldUpdater<Tag> STATE = AtomicIntegerFieldUpdater.newUpdater(Tag.class, "state");
+
+        final int hash;
+        Tag next;
+        volatile int state;
+        // The buffer while it sits in a free list; only the owning thread touches it
+        ByteBuffer pinned;
+
+        Tag(ByteBuffer buffer, int hash, ReferenceQueue<ByteBuffer> queue) {
+            super(buffer, queue);
+            this.hash = hash;
+        }
+    }
+
+    // Identity hash set of tags, looked up without allocating; written only on a miss
+    private static final class Registry {
+        private final ReferenceQueue<ByteBuffer> collected = new ReferenceQueue<>();
+        private Tag[] table = new Tag[256];
+        private int size;
+
+        synchronized void add(ByteBuffer buffer) {
+            expunge();
+            if (size >= table.length * 3 / 4) {
+                resize();
+            }
+            int hash = System.identityHashCode(buffer);
+            int i = hash & (table.length - 1);
+            Tag tag = new Tag(buffer, hash, collected);
+            tag.next = table[i];
+            table[i] = tag;
+            size++;
+        }
+
+        synchronized Tag find(ByteBuffer buffer) {
+            int hash = System.identityHashCode(buffer);
+            for (Tag t = table[hash & (table.length - 1)]; t != null; t = t.next) {
+                if (t.get() == buffer) {
+                    return t;
+                }
+            }
+            return null;
+        }
+
+        private void expunge() {
+            Reference<? extends ByteBuffer> ref;
+            while ((ref = collected.poll()) != null) {
+                Tag dead = (Tag) ref;
+                int i = dead.hash & (table.length - 1);
+                Tag prev = null;
+                for (Tag t = table[i]; t != null; prev = t, t = t.next) {
+                    if (t == dead) {
+                        if (prev == null) {
+                            table[i] = t.next;
+                        } else {
+                            prev.next = t.next;
+                        }
+                        size--;
+                        break;
+                    }
+                }
+            }
+        }
+
+        private void resize() {
+            Tag[] old = table;
+            table = new Tag[old.length * 2];
+            for (Tag head : old) {
+                for (Tag t = head; t != null; ) {
+                    Tag next = t.next;
+                    int i = t.hash & (table.length - 1);
+                    t.next = table[i];
+                    table[i] = t;
+                    t = next;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.ucrypto;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A repeating-key XOR cipher, implemented over JNI ({@link UCrypto}) or other bindings
+ *
+ * Every engine produces identical output. Pick one at runtime with {@link #forName(String)}
+ * or -Ducrypto.engine, so bindings can be swapped and benchmarked without code changes.
+ */
+public interface UCryptoEngine {
+    /**
+     * Name of the JNI engine, always available
+     */
+    String JNI = "jni";
+
+    /**
+     * Name of the pure-Java engine, always available
+     */
+    String JAVA = "java";
+
+    /**
+     * Name of the jdk.incubator.foreign engine, available on JDK 17 run with
+     * --add-modules jdk.incubator.foreign --enable-native-access=ALL-UNNAMED
+     */
+    String FFM = "ffm";
+
+    /**
+     * Returns the engine's name, as accepted by {@link #forName(String)}
+     */
+    String name();
+
+    /**
+     * Encrypts data with the repeating key into a new array
+     */
+    byte[] encrypt(byte[] data, byte[] key);
+
+    /**
+     * Decrypts data with the repeating key into a new array
+     */
+    default byte[] decrypt(byte[] data, byte[] key) {
+        return encrypt(data, key);
+    }
+
+    /**
+     * Encrypts length bytes of src from srcOffset into dst at dstOffset, allocating nothing
+     *
+     * The first byte is XORed with the first key byte. dst may be src, for in-place encryption,
+     * so one destination array can be reused across calls.
+     */
+    void encrypt(byte[] src, int srcOffset, byte[] dst, int dstOffset, int length, byte[] key);
+
+    /**
+     * Decrypts length bytes of src into dst; see {@link #encrypt(byte[], int, byte[], int, int, byte[])}
+     */
+    default void decrypt(byte[] src, int srcOffset, byte[] dst, int dstOffset, int length, byte[] key) {
+        encrypt(src, srcOffset, dst, dstOffset, length, key);
+    }
+
+    /**
+     * Encrypts src.remaining() bytes into dst as if they started keyPosition bytes into the message
+     *
+     * Both positions advance, the key buffer is left unchanged and src and dst may be the same
+     * buffer. Direct buffers work with every engine.
+     */
+    void encrypt(ByteBuffer src, ByteBuffer dst, ByteBuffer key, long keyPosition);
+
+    default void encrypt(ByteBuffer src, ByteBuffer dst, ByteBuffer key) {
+        encrypt(src, dst, key, 0);
+    }
+
+    default void decrypt(ByteBuffer src, ByteBuffer dst, ByteBuffer key) {
+        encrypt(src, dst, key, 0);
+    }
+
+    /**
+     * Returns the engine named by -Ducrypto.engine, JNI by default
+     */
+    static UCryptoEngine getDefault() {
+        return forName(System.getProperty("ucrypto.engine", JNI));
+    }
+
+    /**
+     * Returns a new engine by name
+     *
+     * @throws IllegalArgumentException If the engine is unknown or cannot run on this JVM
+     */
+    static UCryptoEngine forName(String name) {
+        switch (name) {
+            case JNI:
+                return new UCrypto();
+            case JAVA:
+                return new UCryptoJava();
+            case FFM:
+                // Links against jdk.incubator.foreign only when first used
+                try {
+                    return new com.ucrypto.ffm.UCryptoFfm();
+                } catch (LinkageError e) {
+                    throw new IllegalArgumentException("UCrypto engine " + name + " needs JDK 17, libucrypto.so and "
+                            + "--add-modules jdk.incubator.foreign --enable-native-access=ALL-UNNAMED", e);
+                }
+            default:
+                throw new IllegalArgumentException("Unknown UCrypto engine: " + name);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.ucrypto;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Objects;
+
+/**
+ * Decrypts (or, XOR being symmetric, encrypts) everything read from the underlying stream
+ *
+ * Each read fills the caller's array from the underlying stream and decrypts it there in place,
+ * at most bufferSize bytes per call, so no bytes are copied. The key position carries across
+ * reads. Skipped bytes are read into one per-stream buffer and never decrypted; the key position
+ * just moves past them. mark/reset is not supported because it would desynchronize the key
+ * position.
+ */
+public class UCryptoInputStream extends FilterInputStream {
+    private final KeyStream keyStream;
+    private final int bufferSize;
+    private final byte[] single = new byte[1];
+    // Only ever holds ciphertext, so it needs no wiping
+    private byte[] skipBuffer;
+    private boolean closed;
+
+    public UCryptoInputStream(InputStream in, byte[] key) {
+        this(in, key, KeyStream.DEFAULT_BUFFER_SIZE);
+    }
+
+    public UCryptoInputStream(InputStream in, byte[] key, int bufferSize) {
+        super(in);
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("buffer size must be positive: " + bufferSize);
+        }
+        this.keyStream = new KeyStream(key);
+        this.bufferSize = bufferSize;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int n;
+        do {
+            n = read(single, 0, 1);
+        } while (n == 0);
+        return n < 0 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        Objects.checkFromIndexSize(off, len, b.length);
+        if (len == 0) {
+            return 0;
+        }
+        int n = in.read(b, off, Math.min(len, bufferSize));
+        if (n > 0) {
+            keyStream.apply(b, off, n);
+        }
+        return n;
+    }
+
+    /**
+     * Reads and discards n bytes so the key position stays in step
+     */
+    @Override
+    public long skip(long n) throws IOException {
+        ensureOpen();
+        if (n <= 0) {
+            return 0;
+        }
+        if (skipBuffer == null) {
+            skipBuffer = new byte[(int) Math.min(n, bufferSize)];
+        } else if (skipBuffer.length < Math.min(n, bufferSize)) {
+            skipBuffer = new byte[bufferSize];
+        }
+        long skipped = 0;
+        while (skipped < n) {
+            int r = in.read(skipBuffer, 0, (int) Math.min(skipBuffer.length, n - skipped));
+            if (r < 0) {
+                break;
+            }
+            keyStream.skip(r);
+            skipped += r;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("mark/reset not supported");
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            in.close();
+        } finally {
+            keyStream.release();
+        }
+    }
+
+    /**
+     * Bytes returned by this stream so far, i.e. the current key position
+     */
+    public long position() {
+        return keyStream.position();
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+}
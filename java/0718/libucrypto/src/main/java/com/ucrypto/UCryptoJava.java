@@ -0,0 +1,194 @@
+package com.ucrypto;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+/**
+ * Pure-Java UCrypto, bit for bit identical to the native kernels
+ *
+ * Runs on hosts without libucrypto.so: {@link UCrypto} falls back to it automatically when
+ * the library cannot be loaded, and also uses it for byte[] inputs of up to
+ * {@link UCrypto#JAVA_CROSSOVER} bytes, where skipping the JNI transition is faster.
+ * With --add-modules jdk.incubator.vector the XOR runs on ByteVector lanes; without it a
+ * scalar loop is used. ByteBuffers without an accessible array are staged through
+ * per-thread scratch arrays, so steady-state calls do not allocate.
+ *
+ * Run this class to measure where the crossover between Java and JNI lies on this host.
+ */
+public final class UCryptoJava implements UCryptoEngine {
+    /**
+     * True when jdk.incubator.vector is available to this runtime
+     */
+    static final boolean VECTOR = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    private static final int CHUNK = 16 * 1024;
+    private static final int KEYSTREAM_PAD = VECTOR ? VectorXor.LANES : 0;
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    /**
+     * Returns "java-vector" or "java-scalar"
+     */
+    static String implementation() {
+        return VECTOR ? "java-vector" : "java-scalar";
+    }
+
+    @Override
+    public String name() {
+        return JAVA;
+    }
+
+    @Override
+    public byte[] encrypt(byte[] data, byte[] key) {
+        if (key.length == 0) {
+            throw new IllegalArgumentException("key is empty");
+        }
+        byte[] result = new byte[data.length];
+        xor(data, 0, result, 0, data.length, key, 0, key.length, 0);
+        return result;
+    }
+
+    @Override
+    public void encrypt(byte[] src, int srcOffset, byte[] dst, int dstOffset, int length, byte[] key) {
+        Objects.checkFromIndexSize(srcOffset, length, src.length);
+        Objects.checkFromIndexSize(dstOffset, length, dst.length);
+        if (key.length == 0) {
+            throw new IllegalArgumentException("key is empty");
+        }
+        xor(src, srcOffset, dst, dstOffset, length, key, 0, key.length, 0);
+    }
+
+    /**
+     * Same contract as {@link UCrypto#encrypt(ByteBuffer, ByteBuffer, ByteBuffer, long)}, but heap
+     * buffers are accepted too
+     */
+    @Override
+    public void encrypt(ByteBuffer src, ByteBuffer dst, ByteBuffer key, long keyPosition) {
+        if (keyPosition < 0) {
+            throw new IllegalArgumentException("negative keyPosition: " + keyPosition);
+        }
+        int length = src.remaining();
+        if (dst.remaining() < length) {
+            throw new IllegalArgumentException("dst has " + dst.remaining() + " bytes remaining, need " + length);
+        }
+        if (dst.isReadOnly()) {
+            throw new java.nio.ReadOnlyBufferException();
+        }
+        if (!key.hasRemaining()) {
+            throw new IllegalArgumentException("key is empty");
+        }
+        xor(src, src.position(), dst, dst.position(), length, key, key.position(), key.remaining(),
+                (int) (keyPosition % key.remaining()));
+        src.position(src.position() + length);
+        if (dst != src) {
+            dst.position(dst.position() + length);
+        }
+    }
+
+    static void xor(byte[] src, int srcOffset, byte[] dst, int dstOffset, int length,
+                    byte[] key, int keyOffset, int keyLength, int keyPhase) {
+        if (VECTOR && length >= 2 * VectorXor.LANES) {
+            byte[] ks = SCRATCH.get().keystream(keyLength);
+            System.arraycopy(key, keyOffset, ks, 0, keyLength);
+            repeatKey(ks, keyLength);
+            VectorXor.xor(src, srcOffset, dst, dstOffset, length, ks, keyLength, keyPhase);
+            return;
+        }
+        for (int i = 0; i < length; i++) {
+            dst[dstOffset + i] = (byte) (src[srcOffset + i] ^ key[keyOffset + keyPhase]);
+            if (++keyPhase == keyLength) {
+                keyPhase = 0;
+            }
+        }
+    }
+
+    static void xor(ByteBuffer src, int srcOffset, ByteBuffer dst, int dstOffset, int length,
+                    ByteBuffer key, int keyOffset, int keyLength, int keyPhase) {
+        Scratch scratch = SCRATCH.get();
+        byte[] keyBytes;
+        int keyBase;
+        if (key.hasArray()) {
+            keyBytes = key.array();
+            keyBase = key.arrayOffset() + keyOffset;
+        } else {
+            keyBytes = scratch.key(keyLength);
+            key.get(keyOffset, keyBytes, 0, keyLength);
+            keyBase = 0;
+        }
+        if (src.hasArray() && dst.hasArray()) {
+            xor(src.array(), src.arrayOffset() + srcOffset, dst.array(), dst.arrayOffset() + dstOffset, length,
+                    keyBytes, keyBase, keyLength, keyPhase);
+            return;
+        }
+        byte[] chunk = scratch.data;
+        for (int done = 0; done < length; ) {
+            int n = Math.min(chunk.length, length - done);
+            src.get(srcOffset + done, chunk, 0, n);
+            xor(chunk, 0, chunk, 0, n, keyBytes, keyBase, keyLength, (int) ((keyPhase + (long) done) % keyLength));
+            dst.put(dstOffset + done, chunk, 0, n);
+            done += n;
+        }
+    }
+
+    // Extends ks[0..keyLength) with the key's first bytes so any window of one vector fits
+    private static void repeatKey(byte[] ks, int keyLength) {
+        for (int i = keyLength; i < keyLength + KEYSTREAM_PAD; i++) {
+            ks[i] = ks[i - keyLength];
+        }
+    }
+
+    /**
+     * Prints the cost of byte[] encryption through JNI and pure Java by message size
+     *
+     * The largest size at which Java still wins is a good value for -Ducrypto.javaCrossover.
+     */
+    public static void main(String[] args) {
+        UCryptoJava java = new UCryptoJava();
+        UCrypto jni = new UCrypto();
+        byte[] key = jni.generateKey(32);
+        System.out.println("kernel " + UCrypto.implementation() + ", java " + implementation());
+        System.out.printf("%8s %12s %12s%n", "bytes", "jni ns/op", "java ns/op");
+        int crossover = 0;
+        for (int size = 16; size <= 64 * 1024; size *= 2) {
+            byte[] data = new byte[size];
+            double jniNs = time(() -> UCrypto.encryptArray(data, key), size);
+            double javaNs = time(() -> java.encrypt(data, key), size);
+            if (javaNs < jniNs) {
+                crossover = size;
+            }
+            System.out.printf("%8d %12.1f %12.1f%n", size, jniNs, javaNs);
+        }
+        System.out.println("suggested -Ducrypto.javaCrossover=" + crossover);
+    }
+
+    private static double time(Runnable op, int size) {
+        int iterations = Math.max(1000, (int) (200_000_000L / (size + 256)));
+        for (int i = 0; i < iterations; i++) {
+            op.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            op.run();
+        }
+        return (System.nanoTime() - start) / (double) iterations;
+    }
+
+    private static final class Scratch {
+        final byte[] data = new byte[CHUNK];
+        byte[] key = new byte[64];
+        byte[] keystream = new byte[64 + KEYSTREAM_PAD];
+
+        byte[] key(int length) {
+            if (key.length < length) {
+                key = new byte[length];
+            }
+            return key;
+        }
+
+        byte[] keystream(int keyLength) {
+            if (keystream.length < keyLength + KEYSTREAM_PAD) {
+                keystream = new byte[keyLength + KEYSTREAM_PAD];
+            }
+            return keystream;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.ucrypto;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Pre-generated keys of one length for bursts of session setup
+ *
+ * Keys are generated capacity at a time into a direct buffer with one native call, so a
+ * burst of {@link #next()} calls costs a copy each rather than a JNI transition and a
+ * getrandom() call each. Every slot is zeroed as soon as its key has been handed out.
+ * Safe for use by multiple threads.
+ */
+public class UCryptoKeyPool {
+    private final int keyLength;
+    private final int capacity;
+    private final ByteBuffer keys;
+    private final byte[] zeros;
+    private int next;
+    private long refills;
+
+    /**
+     * @param keyLength The length of each key
+     * @param capacity How many keys to generate per refill
+     */
+    public UCryptoKeyPool(int keyLength, int capacity) {
+        if (keyLength <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("keyLength and capacity must be positive");
+        }
+        this.keyLength = keyLength;
+        this.capacity = capacity;
+        this.keys = ByteBuffer.allocateDirect(Math.multiplyExact(keyLength, capacity));
+        this.zeros = new byte[keyLength];
+        this.next = capacity;
+    }
+
+    /**
+     * Takes one key, refilling the whole pool first if it is empty
+     *
+     * @return A new random key of keyLength bytes
+     */
+    public byte[] next() {
+        byte[] key = new byte[keyLength];
+        next(key);
+        return key;
+    }
+
+    /**
+     * Takes one key into the first keyLength bytes of dst
+     */
+    public synchronized void next(byte[] dst) {
+        if (next == capacity) {
+            UCrypto.fillRandom(keys, 0, keys.capacity());
+            next = 0;
+            refills++;
+        }
+        int offset = next++ * keyLength;
+        keys.get(offset, dst, 0, keyLength);
+        keys.put(offset, zeros);
+    }
+
+    /**
+     * Keys left before the next refill
+     */
+    public synchronized int available() {
+        return capacity - next;
+    }
+
+    /**
+     * Number of times the pool has been filled
+     */
+    public synchronized long refills() {
+        return refills;
+    }
+
+    public int keyLength() {
+        return keyLength;
+    }
+}
@@ -0,0 +1,110 @@
+package com.ucrypto;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Encrypts (or, XOR being symmetric, decrypts) everything written to it before passing it on
+ *
+ * Data is collected in one direct buffer, borrowed from {@link UCryptoBufferPool} until close,
+ * and encrypted in place a buffer at a time, so arbitrarily large streams use constant memory
+ * and one native call per buffer. The key
+ * position carries across writes: the output equals {@link UCrypto#encrypt(byte[], byte[])}
+ * of everything written.
+ */
+public class UCryptoOutputStream extends FilterOutputStream {
+    private final KeyStream keyStream;
+    private final ByteBuffer buffer;
+    private final byte[] chunk;
+    private boolean closed;
+
+    public UCryptoOutputStream(OutputStream out, byte[] key) {
+        this(out, key, KeyStream.DEFAULT_BUFFER_SIZE);
+    }
+
+    public UCryptoOutputStream(OutputStream out, byte[] key, int bufferSize) {
+        super(out);
+        this.keyStream = new KeyStream(key);
+        this.buffer = KeyStream.buffer(bufferSize);
+        this.chunk = new byte[buffer.capacity()];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+        if (!buffer.hasRemaining()) {
+            drain();
+        }
+        buffer.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        java.util.Objects.checkFromIndexSize(off, len, b.length);
+        while (len > 0) {
+            if (!buffer.hasRemaining()) {
+                drain();
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.put(b, off, n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * Encrypts and writes out whatever is buffered, then flushes the underlying stream
+     */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        drain();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            drain();
+        } finally {
+            closed = true;
+            try {
+                out.close();
+            } finally {
+                keyStream.release(buffer);
+            }
+        }
+    }
+
+    /**
+     * Bytes written to this stream so far, i.e. the current key position
+     */
+    public long position() {
+        return keyStream.position() + buffer.position();
+    }
+
+    private void drain() throws IOException {
+        int n = buffer.position();
+        if (n == 0) {
+            return;
+        }
+        buffer.flip();
+        keyStream.apply(buffer.duplicate(), buffer);
+        buffer.flip();
+        buffer.get(chunk, 0, n);
+        buffer.clear();
+        out.write(chunk, 0, n);
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+}
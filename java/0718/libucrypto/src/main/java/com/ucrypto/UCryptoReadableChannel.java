@@ -0,0 +1,107 @@
+package com.ucrypto;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Decrypts (or encrypts) bytes as they are read from a channel
+ *
+ * Reads into a direct buffer are decrypted in place with no extra copy; heap buffers are
+ * staged through one direct buffer, borrowed from {@link UCryptoBufferPool} until close. The
+ * key position carries across reads.
+ */
+public class UCryptoReadableChannel implements ReadableByteChannel {
+    private final ReadableByteChannel channel;
+    private final KeyStream keyStream;
+    private final ByteBuffer buffer;
+    // Held for each read, so the key and buffer are never handed back while one is running
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile boolean open = true;
+    private boolean released;
+
+    public UCryptoReadableChannel(ReadableByteChannel channel, byte[] key) {
+        this(channel, key, KeyStream.DEFAULT_BUFFER_SIZE);
+    }
+
+    public UCryptoReadableChannel(ReadableByteChannel channel, byte[] key, int bufferSize) {
+        this.channel = channel;
+        this.keyStream = new KeyStream(key);
+        this.buffer = KeyStream.buffer(bufferSize);
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        lock.lock();
+        try {
+            if (!open) {
+                throw new ClosedChannelException();
+            }
+            int start = dst.position();
+            if (dst.isDirect()) {
+                int n = channel.read(dst);
+                if (n > 0) {
+                    ByteBuffer fresh = dst.slice(start, n);
+                    keyStream.apply(fresh.duplicate(), fresh);
+                }
+                return n;
+            }
+            buffer.clear().limit(Math.min(buffer.capacity(), dst.remaining()));
+            int n = channel.read(buffer);
+            if (n > 0) {
+                buffer.flip();
+                keyStream.apply(buffer.duplicate(), buffer);
+                buffer.flip();
+                dst.put(buffer);
+            }
+            return n;
+        } finally {
+            lock.unlock();
+            releaseIfClosed();
+        }
+    }
+
+    /**
+     * Bytes read so far, i.e. the current key position
+     */
+    public long position() {
+        return keyStream.position();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open && channel.isOpen();
+    }
+
+    /**
+     * Closes the underlying channel; a read still running on another thread ends with whatever
+     * that channel does on an asynchronous close, and the buffers go back to the pool once it returns
+     */
+    @Override
+    public void close() throws IOException {
+        if (open) {
+            open = false;
+            try {
+                channel.close();
+            } finally {
+                releaseIfClosed();
+            }
+        }
+    }
+
+    // Whichever of close and the last read gets the lock after the channel is closed releases
+    private void releaseIfClosed() {
+        if (!open && lock.tryLock()) {
+            try {
+                if (!released) {
+                    released = true;
+                    keyStream.release(buffer);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.ucrypto;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Encrypts (or decrypts) bytes on their way into a blocking channel
+ *
+ * The caller's buffer is never modified. Data is encrypted into one direct buffer, borrowed
+ * from {@link UCryptoBufferPool} until close, straight from direct sources or after one copy
+ * from heap sources, and written out before write returns. The key position carries across
+ * writes.
+ */
+public class UCryptoWritableChannel implements WritableByteChannel {
+    private final WritableByteChannel channel;
+    private final KeyStream keyStream;
+    private final ByteBuffer buffer;
+    // Held for each write, so the key and buffer are never handed back while one is running
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile boolean open = true;
+    private boolean released;
+
+    public UCryptoWritableChannel(WritableByteChannel channel, byte[] key) {
+        this(channel, key, KeyStream.DEFAULT_BUFFER_SIZE);
+    }
+
+    public UCryptoWritableChannel(WritableByteChannel channel, byte[] key, int bufferSize) {
+        this.channel = channel;
+        this.keyStream = new KeyStream(key);
+        this.buffer = KeyStream.buffer(bufferSize);
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        lock.lock();
+        try {
+            if (!open) {
+                throw new ClosedChannelException();
+            }
+            int total = src.remaining();
+            while (src.hasRemaining()) {
+                int n = Math.min(src.remaining(), buffer.capacity());
+                ByteBuffer piece = src.slice(src.position(), n);
+                buffer.clear();
+                if (src.isDirect()) {
+                    keyStream.apply(piece, buffer);
+                } else {
+                    buffer.put(piece).flip();
+                    keyStream.apply(buffer.duplicate(), buffer);
+                }
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                src.position(src.position() + n);
+            }
+            return total;
+        } finally {
+            lock.unlock();
+            releaseIfClosed();
+        }
+    }
+
+    /**
+     * Bytes written so far, i.e. the current key position
+     */
+    public long position() {
+        return keyStream.position();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open && channel.isOpen();
+    }
+
+    /**
+     * Closes the underlying channel; a write still running on another thread ends with whatever
+     * that channel does on an asynchronous close, and the buffers go back to the pool once it returns
+     */
+    @Override
+    public void close() throws IOException {
+        if (open) {
+            open = false;
+            try {
+                channel.close();
+            } finally {
+                releaseIfClosed();
+            }
+        }
+    }
+
+    // Whichever of close and the last write gets the lock after the channel is closed releases
+    private void releaseIfClosed() {
+        if (!open && lock.tryLock()) {
+            try {
+                if (!released) {
+                    released = true;
+                    keyStream.release(buffer);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
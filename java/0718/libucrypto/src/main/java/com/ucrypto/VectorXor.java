@@ -0,0 +1,54 @@
+package com.ucrypto;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The repeating-key XOR with jdk.incubator.vector; only loaded when that module is present
+ *
+ * Mirrors the native kernels: ks holds keyLength + LANES bytes of the key repeated, so the
+ * keystream for a vector at key phase p is ks[p..p+LANES), and p advances by LANES mod
+ * keyLength per vector.
+ */
+final class VectorXor {
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+
+    /**
+     * Bytes per vector on this CPU
+     */
+    static final int LANES = SPECIES.length();
+
+    private VectorXor() {
+    }
+
+    static void xor(byte[] src, int srcOffset, byte[] dst, int dstOffset, int length,
+                    byte[] ks, int keyLength, int phase) {
+        int step = LANES % keyLength;
+        int i = 0;
+        if (step == 0) {
+            // Key length divides the vector width: one keystream vector for the whole run
+            ByteVector k = ByteVector.fromArray(SPECIES, ks, phase);
+            for (; i <= length - LANES; i += LANES) {
+                ByteVector.fromArray(SPECIES, src, srcOffset + i)
+                        .lanewise(VectorOperators.XOR, k)
+                        .intoArray(dst, dstOffset + i);
+            }
+        } else {
+            for (; i <= length - LANES; i += LANES) {
+                ByteVector k = ByteVector.fromArray(SPECIES, ks, phase);
+                ByteVector.fromArray(SPECIES, src, srcOffset + i)
+                        .lanewise(VectorOperators.XOR, k)
+                        .intoArray(dst, dstOffset + i);
+                phase += step;
+                if (phase >= keyLength) {
+                    phase -= keyLength;
+                }
+            }
+        }
+        // Fewer than LANES bytes left, so phase + j stays inside ks
+        for (int j = 0; i < length; i++, j++) {
+            dst[dstOffset + i] = (byte) (src[srcOffset + i] ^ ks[phase + j]);
+        }
+    }
+}
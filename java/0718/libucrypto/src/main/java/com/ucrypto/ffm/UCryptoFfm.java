@@ -0,0 +1,179 @@
+package com.ucrypto.ffm;
+
+import com.ucrypto.UCrypto;
+import com.ucrypto.UCryptoEngine;
+import jdk.incubator.foreign.CLinker;
+import jdk.incubator.foreign.FunctionDescriptor;
+import jdk.incubator.foreign.MemoryAddress;
+import jdk.incubator.foreign.MemorySegment;
+import jdk.incubator.foreign.ResourceScope;
+import jdk.incubator.foreign.SymbolLookup;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.lang.ref.Reference;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+import static jdk.incubator.foreign.CLinker.C_LONG;
+import static jdk.incubator.foreign.CLinker.C_POINTER;
+
+/**
+ * UCrypto through jdk.incubator.foreign downcalls instead of JNI
+ *
+ * Calls the same native kernel as {@link UCrypto} (the exported ucrypto_xor symbol of
+ * libucrypto.so), so the output is identical. Calls of up to {@link #TRIVIAL_MAX_BYTES} use a
+ * trivial downcall ({@link FunctionDescriptor#TRIVIAL_ATTRIBUTE_NAME}), which skips the thread
+ * state transition; larger direct buffers use a regular downcall so safepoints are never held
+ * off for long. Downcalls only take native addresses, so byte[] and heap ByteBuffer data is
+ * copied through a per-thread native buffer in trivial calls of that size.
+ *
+ * Built against the JDK 17 incubator API: compile with --add-modules jdk.incubator.foreign and
+ * run with that and --enable-native-access=ALL-UNNAMED, since the linker methods are restricted.
+ * Later JDKs changed the incubator API, and {@link UCryptoEngine#forName(String)} reports the
+ * engine as unavailable there.
+ */
+public final class UCryptoFfm implements UCryptoEngine {
+    /**
+     * Largest call made with a trivial downcall, and the staging size for heap data
+     */
+    public static final int TRIVIAL_MAX_BYTES = 64 * 1024;
+
+    private static final MethodHandle XOR;
+    private static final MethodHandle XOR_TRIVIAL;
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    static {
+        // Loads libucrypto through the JNI class so both bindings share one library and kernel choice
+        if (!UCrypto.isNative()) {
+            throw new UnsatisfiedLinkError("libucrypto is not loaded");
+        }
+        MemoryAddress symbol = SymbolLookup.loaderLookup().lookup("ucrypto_xor")
+                .orElseThrow(() -> new UnsatisfiedLinkError("ucrypto_xor not found in libucrypto"));
+        // void ucrypto_xor(const uint8_t *src, uint8_t *dst, size_t length,
+        //                  const uint8_t *key, size_t keyLength, size_t keyPhase)
+        MethodType type = MethodType.methodType(void.class, MemoryAddress.class, MemoryAddress.class, long.class,
+                MemoryAddress.class, long.class, long.class);
+        FunctionDescriptor descriptor = FunctionDescriptor.ofVoid(C_POINTER, C_POINTER, C_LONG, C_POINTER, C_LONG, C_LONG);
+        CLinker linker = CLinker.getInstance();
+        XOR = linker.downcallHandle(symbol, type, descriptor);
+        XOR_TRIVIAL = linker.downcallHandle(symbol, type,
+                descriptor.withAttribute(FunctionDescriptor.TRIVIAL_ATTRIBUTE_NAME, true));
+    }
+
+    @Override
+    public String name() {
+        return FFM;
+    }
+
+    @Override
+    public byte[] encrypt(byte[] data, byte[] key) {
+        if (key.length == 0) {
+            throw new IllegalArgumentException("key is empty");
+        }
+        byte[] result = new byte[data.length];
+        Scratch scratch = SCRATCH.get();
+        stage(MemorySegment.ofArray(data), MemorySegment.ofArray(result), scratch.key(MemorySegment.ofArray(key)),
+                key.length, 0, scratch);
+        return result;
+    }
+
+    @Override
+    public void encrypt(byte[] src, int srcOffset, byte[] dst, int dstOffset, int length, byte[] key) {
+        Objects.checkFromIndexSize(srcOffset, length, src.length);
+        Objects.checkFromIndexSize(dstOffset, length, dst.length);
+        if (key.length == 0) {
+            throw new IllegalArgumentException("key is empty");
+        }
+        Scratch scratch = SCRATCH.get();
+        stage(MemorySegment.ofArray(src).asSlice(srcOffset, length), MemorySegment.ofArray(dst).asSlice(dstOffset, length),
+                scratch.key(MemorySegment.ofArray(key)), key.length, 0, scratch);
+    }
+
+    /**
+     * Same contract as {@link UCrypto#encrypt(ByteBuffer, ByteBuffer, ByteBuffer, long)}, but heap
+     * buffers are accepted too
+     */
+    @Override
+    public void encrypt(ByteBuffer src, ByteBuffer dst, ByteBuffer key, long keyPosition) {
+        if (keyPosition < 0) {
+            throw new IllegalArgumentException("negative keyPosition: " + keyPosition);
+        }
+        int length = src.remaining();
+        if (dst.remaining() < length) {
+            throw new IllegalArgumentException("dst has " + dst.remaining() + " bytes remaining, need " + length);
+        }
+        if (dst.isReadOnly()) {
+            throw new java.nio.ReadOnlyBufferException();
+        }
+        if (!key.hasRemaining()) {
+            throw new IllegalArgumentException("key is empty");
+        }
+        // ofByteBuffer covers position..limit
+        MemorySegment srcSegment = MemorySegment.ofByteBuffer(src);
+        MemorySegment dstSegment = MemorySegment.ofByteBuffer(dst).asSlice(0, length);
+        MemorySegment keySegment = MemorySegment.ofByteBuffer(key);
+        long keyLength = keySegment.byteSize();
+        long keyPhase = keyPosition % keyLength;
+        try {
+            if (src.isDirect() && dst.isDirect() && key.isDirect()) {
+                xor(length <= TRIVIAL_MAX_BYTES ? XOR_TRIVIAL : XOR, srcSegment.address(), dstSegment.address(),
+                        length, keySegment.address(), keyLength, keyPhase);
+            } else {
+                Scratch scratch = SCRATCH.get();
+                MemoryAddress keyAddress = key.isDirect() ? keySegment.address() : scratch.key(keySegment);
+                stage(srcSegment, dstSegment, keyAddress, keyLength, keyPhase, scratch);
+            }
+        } finally {
+            // The addresses do not keep the buffers, and so their memory, alive
+            Reference.reachabilityFence(src);
+            Reference.reachabilityFence(dst);
+            Reference.reachabilityFence(key);
+        }
+        src.position(src.position() + length);
+        if (dst != src) {
+            dst.position(dst.position() + length);
+        }
+    }
+
+    // Copies src into the native staging buffer, XORs it there with trivial calls and copies it out to dst
+    private static void stage(MemorySegment src, MemorySegment dst, MemoryAddress key, long keyLength, long keyPhase,
+                              Scratch scratch) {
+        long length = src.byteSize();
+        for (long done = 0; done < length; done += TRIVIAL_MAX_BYTES) {
+            long n = Math.min(TRIVIAL_MAX_BYTES, length - done);
+            MemorySegment chunk = scratch.data.asSlice(0, n);
+            chunk.copyFrom(src.asSlice(done, n));
+            xor(XOR_TRIVIAL, chunk.address(), chunk.address(), n, key, keyLength, (keyPhase + done) % keyLength);
+            dst.asSlice(done, n).copyFrom(chunk);
+        }
+    }
+
+    private static void xor(MethodHandle handle, MemoryAddress src, MemoryAddress dst, long length, MemoryAddress key,
+                            long keyLength, long keyPhase) {
+        try {
+            handle.invokeExact(src, dst, length, key, keyLength, keyPhase);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException("ucrypto_xor downcall failed", t);
+        }
+    }
+
+    // Native memory for staging heap data and keys; freed with the thread's Scratch
+    private static final class Scratch {
+        final ResourceScope scope = ResourceScope.newImplicitScope();
+        final MemorySegment data = MemorySegment.allocateNative(TRIVIAL_MAX_BYTES, scope);
+        MemorySegment key = MemorySegment.allocateNative(256, scope);
+
+        // Copies the key into native memory, growing the key buffer if needed
+        MemoryAddress key(MemorySegment source) {
+            long length = source.byteSize();
+            if (key.byteSize() < length) {
+                key = MemorySegment.allocateNative(Math.max(length, 2 * key.byteSize()), ResourceScope.newImplicitScope());
+            }
+            key.asSlice(0, length).copyFrom(source);
+            return key.address();
+        }
+    }
+}
@@ -7,29 +7,77 @@
 #ifdef __cplusplus
 extern "C" {
 #endif
+#undef com_ucrypto_UCrypto_PARALLEL_THRESHOLD
+#define com_ucrypto_UCrypto_PARALLEL_THRESHOLD 1048576L
+#undef com_ucrypto_UCrypto_LEAF_BYTES
+#define com_ucrypto_UCrypto_LEAF_BYTES 262144L
+#undef com_ucrypto_UCrypto_CRITICAL_CHUNK
+#define com_ucrypto_UCrypto_CRITICAL_CHUNK 1048576L
+#undef com_ucrypto_UCrypto_DEFAULT_MAP_WINDOW
+#define com_ucrypto_UCrypto_DEFAULT_MAP_WINDOW 67108864LL
 /*
  * Class:     com_ucrypto_UCrypto
- * Method:    encrypt
- * Signature: ([B[B)[B
+ * Method:    selectImplementation
+ * Signature: (Ljava/lang/String;)Ljava/lang/String;
  */
-JNIEXPORT jbyteArray JNICALL Java_com_ucrypto_UCrypto_encrypt
-  (JNIEnv *, jobject, jbyteArray, jbyteArray);
+JNIEXPORT jstring JNICALL Java_com_ucrypto_UCrypto_selectImplementation
+  (JNIEnv *, jclass, jstring);
 
 /*
  * Class:     com_ucrypto_UCrypto
- * Method:    decrypt
+ * Method:    encryptArray
  * Signature: ([B[B)[B
  */
-JNIEXPORT jbyteArray JNICALL Java_com_ucrypto_UCrypto_decrypt
-  (JNIEnv *, jobject, jbyteArray, jbyteArray);
+JNIEXPORT jbyteArray JNICALL Java_com_ucrypto_UCrypto_encryptArray
+  (JNIEnv *, jclass, jbyteArray, jbyteArray);
 
 /*
  * Class:     com_ucrypto_UCrypto
- * Method:    generateKey
+ * Method:    generateKey0
  * Signature: (I)[B
  */
-JNIEXPORT jbyteArray JNICALL Java_com_ucrypto_UCrypto_generateKey
-  (JNIEnv *, jobject, jint);
+JNIEXPORT jbyteArray JNICALL Java_com_ucrypto_UCrypto_generateKey0
+  (JNIEnv *, jclass, jint);
+
+/*
+ * Class:     com_ucrypto_UCrypto
+ * Method:    pageSize0
+ * Signature: ()I
+ */
+JNIEXPORT jint JNICALL Java_com_ucrypto_UCrypto_pageSize0
+  (JNIEnv *, jclass);
+
+/*
+ * Class:     com_ucrypto_UCrypto
+ * Method:    xor0
+ * Signature: (Ljava/nio/ByteBuffer;ILjava/nio/ByteBuffer;IILjava/nio/ByteBuffer;III)V
+ */
+JNIEXPORT void JNICALL Java_com_ucrypto_UCrypto_xor0
+  (JNIEnv *, jclass, jobject, jint, jobject, jint, jint, jobject, jint, jint, jint);
+
+/*
+ * Class:     com_ucrypto_UCrypto
+ * Method:    xorArray0
+ * Signature: ([BI[BII[BI)V
+ */
+JNIEXPORT void JNICALL Java_com_ucrypto_UCrypto_xorArray0
+  (JNIEnv *, jclass, jbyteArray, jint, jbyteArray, jint, jint, jbyteArray, jint);
+
+/*
+ * Class:     com_ucrypto_UCrypto
+ * Method:    fillRandom0
+ * Signature: (Ljava/nio/ByteBuffer;II)V
+ */
+JNIEXPORT void JNICALL Java_com_ucrypto_UCrypto_fillRandom0
+  (JNIEnv *, jclass, jobject, jint, jint);
+
+/*
+ * Class:     com_ucrypto_UCrypto
+ * Method:    xorFile
+ * Signature: (Ljava/lang/String;Ljava/lang/String;[BJ)V
+ */
+JNIEXPORT void JNICALL Java_com_ucrypto_UCrypto_xorFile
+  (JNIEnv *, jclass, jstring, jstring, jbyteArray, jlong);
 
 #ifdef __cplusplus
 }
@@ -2,16 +2,330 @@
 #include <cstdint>
 #include <cstring>
 #include <cstdlib>
-#include <ctime>
+#include <unistd.h>
+#include <cerrno>
+#include <cstdio>
+#include <fcntl.h>
+#include <sys/mman.h>
+#include <sys/stat.h>
+#include <sys/random.h>
+#if defined(__x86_64__) || defined(__i386__)
+#include <immintrin.h>
+#elif defined(__aarch64__)
+#include <arm_neon.h>
+#include <sys/auxv.h>
+#include <asm/hwcap.h>
+#if defined(__ARM_FEATURE_SVE)
+#include <arm_sve.h>
+#endif
+#endif
 #include "com_ucrypto_UCrypto.h"
 
+// Every kernel XORs with a keystream buffer ks holding keyLength + KEYSTREAM_BLOCK bytes of the
+// key repeated, so the 64 keystream bytes for a block at key phase p are simply ks[p..p+64).
+// After each block the phase advances by 64 mod keyLength. src and dst may be the same buffer
+// but must not partially overlap.
+#define KEYSTREAM_BLOCK 64
+#define LOCAL_KEYSTREAM 1024
+
+typedef void (*xor_kernel)(const uint8_t *src, uint8_t *dst, size_t length,
+                           const uint8_t *ks, size_t keyLength, size_t phase);
+
+// Finishes the last partial block; phase < keyLength so phase + length stays inside ks
+static inline void xor_tail(const uint8_t *src, uint8_t *dst, size_t length, const uint8_t *ks, size_t phase) {
+    for (size_t i = 0; i < length; i++) {
+        dst[i] = src[i] ^ ks[phase + i];
+    }
+}
+
+static void xor_scalar(const uint8_t *src, uint8_t *dst, size_t length,
+                       const uint8_t *ks, size_t keyLength, size_t phase) {
+    for (size_t i = 0; i < length; i++) {
+        dst[i] = src[i] ^ ks[phase];
+        if (++phase == keyLength) {
+            phase = 0;
+        }
+    }
+}
+
+#if defined(__x86_64__) || defined(__i386__)
+
+__attribute__((target("avx2")))
+static void xor_avx2(const uint8_t *src, uint8_t *dst, size_t length,
+                     const uint8_t *ks, size_t keyLength, size_t phase) {
+    size_t step = KEYSTREAM_BLOCK % keyLength;
+    size_t i = 0;
+    if (step == 0) {
+        // Key length divides 64: the keystream block never changes, keep it in registers
+        __m256i k0 = _mm256_loadu_si256((const __m256i *)(ks + phase));
+        __m256i k1 = _mm256_loadu_si256((const __m256i *)(ks + phase + 32));
+        for (; i + KEYSTREAM_BLOCK <= length; i += KEYSTREAM_BLOCK) {
+            __m256i a = _mm256_loadu_si256((const __m256i *)(src + i));
+            __m256i b = _mm256_loadu_si256((const __m256i *)(src + i + 32));
+            _mm256_storeu_si256((__m256i *)(dst + i), _mm256_xor_si256(a, k0));
+            _mm256_storeu_si256((__m256i *)(dst + i + 32), _mm256_xor_si256(b, k1));
+        }
+    } else {
+        for (; i + KEYSTREAM_BLOCK <= length; i += KEYSTREAM_BLOCK) {
+            __m256i k0 = _mm256_loadu_si256((const __m256i *)(ks + phase));
+            __m256i k1 = _mm256_loadu_si256((const __m256i *)(ks + phase + 32));
+            __m256i a = _mm256_loadu_si256((const __m256i *)(src + i));
+            __m256i b = _mm256_loadu_si256((const __m256i *)(src + i + 32));
+            _mm256_storeu_si256((__m256i *)(dst + i), _mm256_xor_si256(a, k0));
+            _mm256_storeu_si256((__m256i *)(dst + i + 32), _mm256_xor_si256(b, k1));
+            phase += step;
+            if (phase >= keyLength) {
+                phase -= keyLength;
+            }
+        }
+    }
+    xor_tail(src + i, dst + i, length - i, ks, phase);
+}
+
+// SSE2 is part of the x86-64 baseline, so this kernel needs no feature check there
+__attribute__((target("sse2")))
+static void xor_sse2(const uint8_t *src, uint8_t *dst, size_t length,
+                     const uint8_t *ks, size_t keyLength, size_t phase) {
+    size_t step = KEYSTREAM_BLOCK % keyLength;
+    size_t i = 0;
+    for (; i + KEYSTREAM_BLOCK <= length; i += KEYSTREAM_BLOCK) {
+        for (int j = 0; j < KEYSTREAM_BLOCK; j += 16) {
+            __m128i k = _mm_loadu_si128((const __m128i *)(ks + phase + j));
+            __m128i a = _mm_loadu_si128((const __m128i *)(src + i + j));
+            _mm_storeu_si128((__m128i *)(dst + i + j), _mm_xor_si128(a, k));
+        }
+        phase += step;
+        if (phase >= keyLength) {
+            phase -= keyLength;
+        }
+    }
+    xor_tail(src + i, dst + i, length - i, ks, phase);
+}
+
+// __builtin_cpu_init is idempotent; each probe calls it so none depends on the order they run in
+static bool has_avx2() {
+    __builtin_cpu_init();
+    return __builtin_cpu_supports("avx2");
+}
+
+static bool has_sse2() {
+    __builtin_cpu_init();
+    return __builtin_cpu_supports("sse2");
+}
+
+#elif defined(__aarch64__)
+
+// Advanced SIMD is mandatory on AArch64
+static void xor_neon(const uint8_t *src, uint8_t *dst, size_t length,
+                     const uint8_t *ks, size_t keyLength, size_t phase) {
+    size_t step = KEYSTREAM_BLOCK % keyLength;
+    size_t i = 0;
+    for (; i + KEYSTREAM_BLOCK <= length; i += KEYSTREAM_BLOCK) {
+        uint8x16x4_t k = vld1q_u8_x4(ks + phase);
+        uint8x16x4_t a = vld1q_u8_x4(src + i);
+        a.val[0] = veorq_u8(a.val[0], k.val[0]);
+        a.val[1] = veorq_u8(a.val[1], k.val[1]);
+        a.val[2] = veorq_u8(a.val[2], k.val[2]);
+        a.val[3] = veorq_u8(a.val[3], k.val[3]);
+        vst1q_u8_x4(dst + i, a);
+        phase += step;
+        if (phase >= keyLength) {
+            phase -= keyLength;
+        }
+    }
+    xor_tail(src + i, dst + i, length - i, ks, phase);
+}
+
+static bool has_neon() {
+    return true;
+}
+
+#if defined(__ARM_FEATURE_SVE)
+// Only built when the compiler targets SVE (e.g. -march=armv8.2-a+sve); still selected only
+// if the kernel reports SVE. Predicated loads cover the 64-byte block at any vector length.
+static void xor_sve(const uint8_t *src, uint8_t *dst, size_t length,
+                    const uint8_t *ks, size_t keyLength, size_t phase) {
+    size_t step = KEYSTREAM_BLOCK % keyLength;
+    size_t vl = svcntb();
+    size_t i = 0;
+    for (; i + KEYSTREAM_BLOCK <= length; i += KEYSTREAM_BLOCK) {
+        for (size_t j = 0; j < KEYSTREAM_BLOCK; j += vl) {
+            svbool_t pg = svwhilelt_b8_u64(j, KEYSTREAM_BLOCK);
+            svuint8_t k = svld1_u8(pg, ks + phase + j);
+            svuint8_t a = svld1_u8(pg, src + i + j);
+            svst1_u8(pg, dst + i + j, sveor_u8_x(pg, a, k));
+        }
+        phase += step;
+        if (phase >= keyLength) {
+            phase -= keyLength;
+        }
+    }
+    xor_tail(src + i, dst + i, length - i, ks, phase);
+}
+
+static bool has_sve() {
+    return (getauxval(AT_HWCAP) & HWCAP_SVE) != 0;
+}
+#endif
+
+#endif
+
+static bool always() {
+    return true;
+}
+
+struct kernel_entry {
+    const char *name;
+    xor_kernel fn;
+    bool (*supported)();
+};
+
+// Best first; the scalar loop is always available
+static const kernel_entry KERNELS[] = {
+#if defined(__x86_64__) || defined(__i386__)
+    {"avx2", xor_avx2, has_avx2},
+    {"sse2", xor_sse2, has_sse2},
+#elif defined(__aarch64__)
+#if defined(__ARM_FEATURE_SVE)
+    {"sve", xor_sve, has_sve},
+#endif
+    {"neon", xor_neon, has_neon},
+#endif
+    {"scalar", xor_scalar, always},
+};
+
+static const kernel_entry *active_kernel = &KERNELS[sizeof(KERNELS) / sizeof(KERNELS[0]) - 1];
+
+// Picks the named kernel if this CPU supports it, otherwise the best supported one
+static const kernel_entry *select_kernel(const char *requested) {
+    const kernel_entry *best = NULL;
+    for (const kernel_entry &k : KERNELS) {
+        if (!k.supported()) {
+            continue;
+        }
+        if (best == NULL) {
+            best = &k;
+        }
+        if (requested != NULL && strcmp(requested, k.name) == 0) {
+            return &k;
+        }
+    }
+    return best;
+}
+
+// XORs data with the key repeated from key[keyPhase]; src and dst may alias
+static void xor_keystream(const uint8_t *src, uint8_t *dst, size_t length,
+                          const uint8_t *key, size_t keyLength, size_t keyPhase) {
+    uint8_t local[LOCAL_KEYSTREAM + KEYSTREAM_BLOCK];
+    uint8_t *ks = local;
+    if (length < KEYSTREAM_BLOCK) {
+        // Too short to amortize expanding the key
+        xor_scalar(src, dst, length, key, keyLength, keyPhase);
+        return;
+    }
+    if (keyLength > LOCAL_KEYSTREAM) {
+        ks = (uint8_t *)malloc(keyLength + KEYSTREAM_BLOCK);
+        if (ks == NULL) {
+            xor_scalar(src, dst, length, key, keyLength, keyPhase);
+            return;
+        }
+    }
+    memcpy(ks, key, keyLength);
+    for (size_t i = keyLength; i < keyLength + KEYSTREAM_BLOCK; i++) {
+        ks[i] = ks[i - keyLength];
+    }
+    active_kernel->fn(src, dst, length, ks, keyLength, keyPhase);
+    if (ks != local) {
+        free(ks);
+    }
+}
+
+// Keys come from the kernel CSPRNG. Each thread keeps a buffer of getrandom() output so
+// short keys cost a memcpy rather than a system call; bytes are wiped once handed out.
+#define RANDOM_BUFFER_SIZE 4096
+
+struct random_buffer {
+    uint8_t bytes[RANDOM_BUFFER_SIZE];
+    size_t available;
+};
+
+static thread_local random_buffer thread_random;
+
+static void wipe(void *p, size_t length) {
+    volatile uint8_t *v = (volatile uint8_t *)p;
+    while (length--) {
+        *v++ = 0;
+    }
+}
+
+// Fills dst straight from getrandom(), retrying on EINTR and short reads
+static bool getrandom_fully(uint8_t *dst, size_t length) {
+    while (length > 0) {
+        ssize_t n = getrandom(dst, length, 0);
+        if (n < 0) {
+            if (errno == EINTR) {
+                continue;
+            }
+            return false;
+        }
+        dst += n;
+        length -= (size_t)n;
+    }
+    return true;
+}
+
+static bool random_bytes(uint8_t *dst, size_t length) {
+    if (length >= RANDOM_BUFFER_SIZE) {
+        return getrandom_fully(dst, length);
+    }
+    random_buffer &rb = thread_random;
+    while (length > 0) {
+        if (rb.available == 0) {
+            if (!getrandom_fully(rb.bytes, RANDOM_BUFFER_SIZE)) {
+                return false;
+            }
+            rb.available = RANDOM_BUFFER_SIZE;
+        }
+        size_t n = length < rb.available ? length : rb.available;
+        uint8_t *from = rb.bytes + RANDOM_BUFFER_SIZE - rb.available;
+        memcpy(dst, from, n);
+        wipe(from, n);
+        rb.available -= n;
+        dst += n;
+        length -= n;
+    }
+    return true;
+}
+
+static void throw_random(JNIEnv *env) {
+    char message[256];
+    snprintf(message, sizeof(message), "getrandom failed: %s", strerror(errno));
+    env->ThrowNew(env->FindClass("java/lang/IllegalStateException"), message);
+}
+
+// Plain C entry point for callers that bind without JNI, e.g. the jdk.incubator.foreign
+// downcalls of com.ucrypto.ffm.UCryptoFfm. Uses the kernel selected when the library was loaded.
+extern "C" __attribute__((visibility("default")))
+void ucrypto_xor(const uint8_t *src, uint8_t *dst, size_t length,
+                 const uint8_t *key, size_t keyLength, size_t keyPhase) {
+    if (length == 0 || keyLength == 0) {
+        return;
+    }
+    xor_keystream(src, dst, length, key, keyLength, keyPhase % keyLength);
+}
+
+JNIEXPORT jint JNICALL JNI_OnLoad(JavaVM *vm, void *reserved) {
+    active_kernel = select_kernel(NULL);
+    return JNI_VERSION_1_6;
+}
+
 /*
  * Class:     com_ucrypto_UCrypto
- * Method:    encrypt
+ * Method:    encryptArray
  * Signature: ([B[B)[B
  */
-JNIEXPORT jbyteArray JNICALL Java_com_ucrypto_UCrypto_encrypt
-  (JNIEnv *env, jobject obj, jbyteArray data, jbyteArray key) {
+JNIEXPORT jbyteArray JNICALL Java_com_ucrypto_UCrypto_encryptArray
+  (JNIEnv *env, jclass cls, jbyteArray data, jbyteArray key) {
     
     // Get the data and key as C arrays
     jbyte *dataBytes = env->GetByteArrayElements(data, NULL);
@@ -19,15 +333,20 @@ JNIEXPORT jbyteArray JNICALL Java_com_ucrypto_UCrypto_encrypt
     
     jsize dataLength = env->GetArrayLength(data);
     jsize keyLength = env->GetArrayLength(key);
+    if (keyLength == 0) {
+        env->ReleaseByteArrayElements(data, dataBytes, JNI_ABORT);
+        env->ReleaseByteArrayElements(key, keyBytes, JNI_ABORT);
+        env->ThrowNew(env->FindClass("java/lang/IllegalArgumentException"), "key is empty");
+        return NULL;
+    }
     
     // Create a new byte array for the result
     jbyteArray result = env->NewByteArray(dataLength);
     jbyte *resultBytes = env->GetByteArrayElements(result, NULL);
     
     // Simple XOR encryption
-    for (int i = 0; i < dataLength; i++) {
-        resultBytes[i] = dataBytes[i] ^ keyBytes[i % keyLength];
-    }
+    xor_keystream((const uint8_t *)dataBytes, (uint8_t *)resultBytes, (size_t)dataLength,
+                  (const uint8_t *)keyBytes, (size_t)keyLength, 0);
     
     // Release the arrays
     env->ReleaseByteArrayElements(result, resultBytes, 0);
@@ -39,42 +358,204 @@ JNIEXPORT jbyteArray JNICALL Java_com_ucrypto_UCrypto_encrypt
 
 /*
  * Class:     com_ucrypto_UCrypto
- * Method:    decrypt
- * Signature: ([B[B)[B
+ * Method:    generateKey0
+ * Signature: (I)[B
  */
-JNIEXPORT jbyteArray JNICALL Java_com_ucrypto_UCrypto_decrypt
-  (JNIEnv *env, jobject obj, jbyteArray data, jbyteArray key) {
+JNIEXPORT jbyteArray JNICALL Java_com_ucrypto_UCrypto_generateKey0
+  (JNIEnv *env, jclass cls, jint length) {
     
-    // Decryption is the same as encryption for XOR
-    return Java_com_ucrypto_UCrypto_encrypt(env, obj, data, key);
+    // Create a new byte array for the key
+    jbyteArray key = env->NewByteArray(length);
+    if (key == NULL) {
+        return NULL;
+    }
+
+    // Copy random bytes straight from this thread's buffer into the array
+    uint8_t chunk[RANDOM_BUFFER_SIZE];
+    for (jint done = 0; done < length; ) {
+        size_t n = (size_t)(length - done) < sizeof(chunk) ? (size_t)(length - done) : sizeof(chunk);
+        if (!random_bytes(chunk, n)) {
+            throw_random(env);
+            return NULL;
+        }
+        env->SetByteArrayRegion(key, done, (jsize)n, (const jbyte *)chunk);
+        done += (jint)n;
+    }
+    wipe(chunk, (size_t)length < sizeof(chunk) ? (size_t)length : sizeof(chunk));
+
+    return key;
 }
 
 /*
  * Class:     com_ucrypto_UCrypto
- * Method:    generateKey
- * Signature: (I)[B
+ * Method:    xor0
+ * Signature: (Ljava/nio/ByteBuffer;ILjava/nio/ByteBuffer;IILjava/nio/ByteBuffer;III)V
  */
-JNIEXPORT jbyteArray JNICALL Java_com_ucrypto_UCrypto_generateKey
-  (JNIEnv *env, jobject obj, jint length) {
-    
-    // Create a new byte array for the key
-    jbyteArray key = env->NewByteArray(length);
+JNIEXPORT void JNICALL Java_com_ucrypto_UCrypto_xor0
+  (JNIEnv *env, jclass cls, jobject src, jint srcOffset, jobject dst, jint dstOffset, jint length,
+   jobject key, jint keyOffset, jint keyLength, jint keyPhase) {
+
+    // Direct buffers are addressed in place: no pinning, no copy, no result allocation
+    uint8_t *srcBytes = (uint8_t *)env->GetDirectBufferAddress(src);
+    uint8_t *dstBytes = (uint8_t *)env->GetDirectBufferAddress(dst);
+    uint8_t *keyBytes = (uint8_t *)env->GetDirectBufferAddress(key);
+    if (srcBytes == NULL || dstBytes == NULL || keyBytes == NULL) {
+        env->ThrowNew(env->FindClass("java/lang/IllegalArgumentException"), "ByteBuffer arguments must be direct");
+        return;
+    }
+
+    xor_keystream(srcBytes + srcOffset, dstBytes + dstOffset, (size_t)length, keyBytes + keyOffset, (size_t)keyLength, (size_t)keyPhase);
+}
+
+/*
+ * Class:     com_ucrypto_UCrypto
+ * Method:    xorArray0
+ * Signature: ([BI[BII[BI)V
+ */
+JNIEXPORT void JNICALL Java_com_ucrypto_UCrypto_xorArray0
+  (JNIEnv *env, jclass cls, jbyteArray src, jint srcOffset, jbyteArray dst, jint dstOffset, jint length,
+   jbyteArray key, jint keyPhase) {
+
+    // Arrays are pinned rather than copied and nothing is allocated; the caller bounds both
+    // length and the time spent inside the critical region
+    jsize keyLength = env->GetArrayLength(key);
+    bool inPlace = env->IsSameObject(src, dst);
+    uint8_t *srcBytes = (uint8_t *)env->GetPrimitiveArrayCritical(src, NULL);
+    uint8_t *dstBytes = inPlace ? srcBytes : (uint8_t *)env->GetPrimitiveArrayCritical(dst, NULL);
+    uint8_t *keyBytes = (uint8_t *)env->GetPrimitiveArrayCritical(key, NULL);
+    if (srcBytes != NULL && dstBytes != NULL && keyBytes != NULL) {
+        xor_keystream(srcBytes + srcOffset, dstBytes + dstOffset, (size_t)length, keyBytes, (size_t)keyLength, (size_t)keyPhase);
+    }
+    if (keyBytes != NULL) {
+        env->ReleasePrimitiveArrayCritical(key, keyBytes, JNI_ABORT);
+    }
+    if (!inPlace && dstBytes != NULL) {
+        env->ReleasePrimitiveArrayCritical(dst, dstBytes, 0);
+    }
+    if (srcBytes != NULL) {
+        env->ReleasePrimitiveArrayCritical(src, srcBytes, inPlace ? 0 : JNI_ABORT);
+    }
+}
+
+/*
+ * Class:     com_ucrypto_UCrypto
+ * Method:    selectImplementation
+ * Signature: (Ljava/lang/String;)Ljava/lang/String;
+ */
+JNIEXPORT jstring JNICALL Java_com_ucrypto_UCrypto_selectImplementation
+  (JNIEnv *env, jclass cls, jstring requested) {
+
+    const char *name = requested != NULL ? env->GetStringUTFChars(requested, NULL) : NULL;
+    active_kernel = select_kernel(name);
+    if (name != NULL) {
+        env->ReleaseStringUTFChars(requested, name);
+    }
+    return env->NewStringUTF(active_kernel->name);
+}
+
+/*
+ * Class:     com_ucrypto_UCrypto
+ * Method:    pageSize0
+ * Signature: ()I
+ */
+JNIEXPORT jint JNICALL Java_com_ucrypto_UCrypto_pageSize0
+  (JNIEnv *env, jclass cls) {
+
+    return (jint)sysconf(_SC_PAGESIZE);
+}
+
+static void throw_io(JNIEnv *env, const char *what, const char *path) {
+    char message[1024];
+    snprintf(message, sizeof(message), "%s %s: %s", what, path, strerror(errno));
+    env->ThrowNew(env->FindClass("java/io/IOException"), message);
+}
+
+/*
+ * Class:     com_ucrypto_UCrypto
+ * Method:    xorFile
+ * Signature: (Ljava/lang/String;Ljava/lang/String;[BJ)V
+ */
+JNIEXPORT void JNICALL Java_com_ucrypto_UCrypto_xorFile
+  (JNIEnv *env, jclass cls, jstring inPath, jstring outPath, jbyteArray key, jlong window) {
+
+    const char *inName = env->GetStringUTFChars(inPath, NULL);
+    const char *outName = env->GetStringUTFChars(outPath, NULL);
     jbyte *keyBytes = env->GetByteArrayElements(key, NULL);
-    
-    // Seed the random number generator
-    static bool seeded = false;
-    if (!seeded) {
-        srand(time(NULL));
-        seeded = true;
+    size_t keyLength = (size_t)env->GetArrayLength(key);
+    int in = -1, out = -1;
+    struct stat inStat, outStat;
+
+    in = open(inName, O_RDONLY | O_CLOEXEC);
+    if (in < 0 || fstat(in, &inStat) != 0) {
+        throw_io(env, "cannot open", inName);
+        goto done;
     }
-    
-    // Generate random bytes
-    for (int i = 0; i < length; i++) {
-        keyBytes[i] = (jbyte)(rand() % 256);
+    out = open(outName, O_RDWR | O_CREAT | O_CLOEXEC, 0644);
+    if (out < 0 || fstat(out, &outStat) != 0) {
+        throw_io(env, "cannot open", outName);
+        goto done;
+    }
+    {
+        // Encrypting a file onto itself maps it once, read-write
+        bool inPlace = inStat.st_dev == outStat.st_dev && inStat.st_ino == outStat.st_ino;
+        size_t size = (size_t)inStat.st_size;
+        if (!inPlace && ftruncate(out, inStat.st_size) != 0) {
+            throw_io(env, "cannot resize", outName);
+            goto done;
+        }
+        // Windows are page multiples, so every mmap offset is page aligned
+        for (size_t offset = 0; offset < size; offset += (size_t)window) {
+            size_t length = size - offset < (size_t)window ? size - offset : (size_t)window;
+            uint8_t *dst = (uint8_t *)mmap(NULL, length, PROT_READ | PROT_WRITE, MAP_SHARED, out, (off_t)offset);
+            if (dst == MAP_FAILED) {
+                throw_io(env, "cannot map", outName);
+                goto done;
+            }
+            uint8_t *src = dst;
+            if (!inPlace) {
+                src = (uint8_t *)mmap(NULL, length, PROT_READ, MAP_SHARED, in, (off_t)offset);
+                if (src == MAP_FAILED) {
+                    throw_io(env, "cannot map", inName);
+                    munmap(dst, length);
+                    goto done;
+                }
+                madvise(dst, length, MADV_SEQUENTIAL);
+            }
+            madvise(src, length, MADV_SEQUENTIAL);
+            xor_keystream(src, dst, length, (const uint8_t *)keyBytes, keyLength, offset % keyLength);
+            if (src != dst) {
+                munmap(src, length);
+            }
+            munmap(dst, length);
+        }
+    }
+
+done:
+    if (out >= 0) {
+        close(out);
+    }
+    if (in >= 0) {
+        close(in);
+    }
+    env->ReleaseByteArrayElements(key, keyBytes, JNI_ABORT);
+    env->ReleaseStringUTFChars(outPath, outName);
+    env->ReleaseStringUTFChars(inPath, inName);
+}
+
+/*
+ * Class:     com_ucrypto_UCrypto
+ * Method:    fillRandom0
+ * Signature: (Ljava/nio/ByteBuffer;II)V
+ */
+JNIEXPORT void JNICALL Java_com_ucrypto_UCrypto_fillRandom0
+  (JNIEnv *env, jclass cls, jobject buffer, jint offset, jint length) {
+
+    uint8_t *bytes = (uint8_t *)env->GetDirectBufferAddress(buffer);
+    if (bytes == NULL) {
+        env->ThrowNew(env->FindClass("java/lang/IllegalArgumentException"), "ByteBuffer must be direct");
+        return;
+    }
+    if (!random_bytes(bytes + offset, (size_t)length)) {
+        throw_random(env);
     }
-    
-    // Release the array
-    env->ReleaseByteArrayElements(key, keyBytes, 0);
-    
-    return key;
 }
@@ -49,17 +49,32 @@ cat > native/ucrypto_jni.c << 'EOF'
 #include <stdint.h>
 #include <string.h>
 
+// Per-call logging; off unless UCryptoDemo.setDebug(true) or -Ducrypto.debug=true
+static volatile int debug_enabled = 0;
+
+#define DEBUG_LOG(msg) do { if (debug_enabled) { printf("%s\n", msg); fflush(stdout); } } while (0)
+
+static void xor_bytes(uint8_t *p, jint len) {
+    for (jint i = 0; i < len; i++) {
+        p[i] ^= 0x42; // XOR with 0x42
+    }
+}
+
+JNIEXPORT void JNICALL Java_com_example_UCryptoDemo_setDebug(JNIEnv *env, jclass cls, jboolean enabled) {
+    debug_enabled = enabled ? 1 : 0;
+}
+
 JNIEXPORT void JNICALL Java_com_example_UCryptoDemo_printCustomMessage(JNIEnv *env, jclass cls) {
     printf("hello from custom ucrypto\n"); fflush(stdout);
 }
 
 JNIEXPORT jstring JNICALL Java_com_example_UCryptoDemo_getVersion(JNIEnv *env, jclass cls) {
-    printf("hello from custom ucrypto\n"); fflush(stdout);
+    DEBUG_LOG("hello from custom ucrypto");
     return (*env)->NewStringUTF(env, "Custom UCrypto 1.0.0");
 }
 
 JNIEXPORT jbyteArray JNICALL Java_com_example_UCryptoDemo_encrypt(JNIEnv *env, jclass cls, jbyteArray data) {
-    printf("hello from custom ucrypto\n"); fflush(stdout);
+    DEBUG_LOG("hello from custom ucrypto");
     
     jsize len = (*env)->GetArrayLength(env, data);
     jbyte* input = (*env)->GetByteArrayElements(env, data, NULL);
@@ -77,12 +92,45 @@ JNIEXPORT jbyteArray JNICALL Java_com_example_UCryptoDemo_encrypt(JNIEnv *env, j
     
     return result;
 }
+
+// Encrypts count messages in place, message i being lengths[i] bytes at offsets[i] of one
+// direct buffer. Bounds are checked on the Java side.
+JNIEXPORT void JNICALL Java_com_example_UCryptoDemo_encryptBatch0(JNIEnv *env, jclass cls, jobject buffer,
+        jintArray offsets, jintArray lengths, jint count) {
+    DEBUG_LOG("hello from custom ucrypto");
+
+    uint8_t *base = (uint8_t *) (*env)->GetDirectBufferAddress(env, buffer);
+    jint *offs = (*env)->GetPrimitiveArrayCritical(env, offsets, NULL);
+    jint *lens = (*env)->GetPrimitiveArrayCritical(env, lengths, NULL);
+    for (jint i = 0; i < count; i++) {
+        xor_bytes(base + offs[i], lens[i]);
+    }
+    (*env)->ReleasePrimitiveArrayCritical(env, lengths, lens, JNI_ABORT);
+    (*env)->ReleasePrimitiveArrayCritical(env, offsets, offs, JNI_ABORT);
+}
+
+// Encrypts lengths[i] bytes at positions[i] of each direct buffer in place
+JNIEXPORT void JNICALL Java_com_example_UCryptoDemo_encryptBuffers0(JNIEnv *env, jclass cls, jobjectArray buffers,
+        jintArray positions, jintArray lengths) {
+    DEBUG_LOG("hello from custom ucrypto");
+
+    jsize count = (*env)->GetArrayLength(env, buffers);
+    jint *pos = (*env)->GetIntArrayElements(env, positions, NULL);
+    jint *lens = (*env)->GetIntArrayElements(env, lengths, NULL);
+    for (jsize i = 0; i < count; i++) {
+        jobject b = (*env)->GetObjectArrayElement(env, buffers, i);
+        xor_bytes((uint8_t *) (*env)->GetDirectBufferAddress(env, b) + pos[i], lens[i]);
+        (*env)->DeleteLocalRef(env, b);
+    }
+    (*env)->ReleaseIntArrayElements(env, lengths, lens, JNI_ABORT);
+    (*env)->ReleaseIntArrayElements(env, positions, pos, JNI_ABORT);
+}
 EOF
 
 # 5. Compile JNI wrapper
 export JAVA_HOME=$(readlink -f /usr/bin/java | sed "s:bin/java::")
 echo "JAVA_HOME: $JAVA_HOME"
-gcc -shared -fPIC -I"$JAVA_HOME/include" -I"$JAVA_HOME/include/linux" \
+gcc -O2 -shared -fPIC -I"$JAVA_HOME/include" -I"$JAVA_HOME/include/linux" \
     native/ucrypto_jni.c -o native/libucrypto_jni.so
 
 # 6. Copy to system library path
@@ -94,32 +142,92 @@ mkdir -p src/main/java/com/example
 cat > src/main/java/com/example/UCryptoDemo.java << 'EOF'
 package com.example;
 
+import java.nio.ByteBuffer;
+
 public class UCryptoDemo {
     // Native method declarations
     public static native void printCustomMessage();
     public static native String getVersion();
     public static native byte[] encrypt(byte[] data);
-    
+
+    // Turns the native per-call "hello from custom ucrypto" logging on or off (off by default)
+    public static native void setDebug(boolean enabled);
+
+    private static native void encryptBatch0(ByteBuffer buffer, int[] offsets, int[] lengths, int count);
+    private static native void encryptBuffers0(ByteBuffer[] buffers, int[] positions, int[] lengths);
+
     static {
         // Load our custom UCrypto JNI library
         System.load("/usr/local/lib/libucrypto_jni.so");
+        setDebug(Boolean.getBoolean("ucrypto.debug"));
+    }
+
+    /**
+     * Encrypts count messages in place with one native call. Message i is lengths[i] bytes
+     * starting at absolute index offsets[i] of the direct buffer; the buffer's position and
+     * limit are ignored and left unchanged.
+     */
+    public static void encryptBatch(ByteBuffer buffer, int[] offsets, int[] lengths, int count) {
+        if (!buffer.isDirect()) {
+            throw new IllegalArgumentException("buffer must be direct");
+        }
+        if (buffer.isReadOnly()) {
+            throw new java.nio.ReadOnlyBufferException();
+        }
+        if (count < 0 || count > offsets.length || count > lengths.length) {
+            throw new IllegalArgumentException("count " + count + " out of range for " + offsets.length
+                    + " offsets and " + lengths.length + " lengths");
+        }
+        int capacity = buffer.capacity();
+        for (int i = 0; i < count; i++) {
+            if (offsets[i] < 0 || lengths[i] < 0 || offsets[i] > capacity - lengths[i]) {
+                throw new IndexOutOfBoundsException("message " + i + " [" + offsets[i] + ", +" + lengths[i]
+                        + ") outside buffer of capacity " + capacity);
+            }
+        }
+        if (count > 0) {
+            encryptBatch0(buffer, offsets, lengths, count);
+        }
+    }
+
+    /**
+     * Encrypts the bytes between position and limit of each direct buffer in place with one
+     * native call. Positions and limits are left unchanged.
+     */
+    public static void encryptBatch(ByteBuffer[] buffers) {
+        int[] positions = new int[buffers.length];
+        int[] lengths = new int[buffers.length];
+        for (int i = 0; i < buffers.length; i++) {
+            ByteBuffer b = buffers[i];
+            if (!b.isDirect()) {
+                throw new IllegalArgumentException("buffer " + i + " is not direct");
+            }
+            if (b.isReadOnly()) {
+                throw new java.nio.ReadOnlyBufferException();
+            }
+            positions[i] = b.position();
+            lengths[i] = b.remaining();
+        }
+        if (buffers.length > 0) {
+            encryptBuffers0(buffers, positions, lengths);
+        }
     }
 
     public static void main(String[] args) {
         try {
             System.out.println("UCrypto Demo Starting...");
-            
+
             // Call custom message method
             printCustomMessage();
-            
-            // Get version (this will also trigger our custom printf)
+
+            // Get version (this also prints our custom message with -Ducrypto.debug=true)
             System.out.println("UCrypto version: " + getVersion());
-            
-            // Encrypt some data (this will also trigger our custom printf)
+
+            // Encrypt some data (this also prints our custom message with -Ducrypto.debug=true)
             System.out.println("Encrypting data...");
             String testData = "Hello World!";
             byte[] encrypted = encrypt(testData.getBytes());
-            
+
             if (encrypted != null) {
                 System.out.println("Original: " + testData);
                 System.out.print("Encrypted bytes: ");
@@ -127,12 +235,33 @@ public class UCryptoDemo {
                     System.out.printf("%02x ", b);
                 }
                 System.out.println();
+
+                // Encrypt many small messages packed into one direct buffer with a single native call
+                int count = 10000;
+                byte[] message = testData.getBytes();
+                ByteBuffer packed = ByteBuffer.allocateDirect(count * message.length);
+                int[] offsets = new int[count];
+                int[] lengths = new int[count];
+                for (int i = 0; i < count; i++) {
+                    offsets[i] = packed.position();
+                    lengths[i] = message.length;
+                    packed.put(message);
+                }
+                encryptBatch(packed, offsets, lengths, count);
+                boolean batchMatches = true;
+                for (int i = 0; i < count; i++) {
+                    for (int j = 0; j < lengths[i]; j++) {
+                        batchMatches &= packed.get(offsets[i] + j) == encrypted[j];
+                    }
+                }
+                System.out.println("Batch of " + count + " messages matches: " + batchMatches);
+
                 System.out.println("UCrypto encryption completed successfully!");
                 System.out.println("UCrypto demo completed successfully!");
             } else {
                 System.out.println("Failed to encrypt data");
             }
-            
+
         } catch (Exception e) {
             System.err.println("Error: " + e.getMessage());
             e.printStackTrace();
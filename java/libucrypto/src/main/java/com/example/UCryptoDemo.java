@@ -1,31 +1,91 @@
 package com.example;
 
+import java.nio.ByteBuffer;
+
 public class UCryptoDemo {
     // Native method declarations
     public static native void printCustomMessage();
     public static native String getVersion();
     public static native byte[] encrypt(byte[] data);
-    
+
+    // Turns the native per-call "hello from custom ucrypto" logging on or off (off by default)
+    public static native void setDebug(boolean enabled);
+
+    private static native void encryptBatch0(ByteBuffer buffer, int[] offsets, int[] lengths, int count);
+    private static native void encryptBuffers0(ByteBuffer[] buffers, int[] positions, int[] lengths);
+
     static {
         // Load our custom UCrypto JNI library
         System.load("/usr/local/lib/libucrypto_jni.so");
+        setDebug(Boolean.getBoolean("ucrypto.debug"));
+    }
+
+    /**
+     * Encrypts count messages in place with one native call. Message i is lengths[i] bytes
+     * starting at absolute index offsets[i] of the direct buffer; the buffer's position and
+     * limit are ignored and left unchanged.
+     */
+    public static void encryptBatch(ByteBuffer buffer, int[] offsets, int[] lengths, int count) {
+        if (!buffer.isDirect()) {
+            throw new IllegalArgumentException("buffer must be direct");
+        }
+        if (buffer.isReadOnly()) {
+            throw new java.nio.ReadOnlyBufferException();
+        }
+        if (count < 0 || count > offsets.length || count > lengths.length) {
+            throw new IllegalArgumentException("count " + count + " out of range for " + offsets.length
+                    + " offsets and " + lengths.length + " lengths");
+        }
+        int capacity = buffer.capacity();
+        for (int i = 0; i < count; i++) {
+            if (offsets[i] < 0 || lengths[i] < 0 || offsets[i] > capacity - lengths[i]) {
+                throw new IndexOutOfBoundsException("message " + i + " [" + offsets[i] + ", +" + lengths[i]
+                        + ") outside buffer of capacity " + capacity);
+            }
+        }
+        if (count > 0) {
+            encryptBatch0(buffer, offsets, lengths, count);
+        }
+    }
+
+    /**
+     * Encrypts the bytes between position and limit of each direct buffer in place with one
+     * native call. Positions and limits are left unchanged.
+     */
+    public static void encryptBatch(ByteBuffer[] buffers) {
+        int[] positions = new int[buffers.length];
+        int[] lengths = new int[buffers.length];
+        for (int i = 0; i < buffers.length; i++) {
+            ByteBuffer b = buffers[i];
+            if (!b.isDirect()) {
+                throw new IllegalArgumentException("buffer " + i + " is not direct");
+            }
+            if (b.isReadOnly()) {
+                throw new java.nio.ReadOnlyBufferException();
+            }
+            positions[i] = b.position();
+            lengths[i] = b.remaining();
+        }
+        if (buffers.length > 0) {
+            encryptBuffers0(buffers, positions, lengths);
+        }
     }
 
     public static void main(String[] args) {
         try {
             System.out.println("UCrypto Demo Starting...");
-            
+
             // Call custom message method
             printCustomMessage();
-            
-            // Get version (this will also trigger our custom printf)
+
+            // Get version (this also prints our custom message with -Ducrypto.debug=true)
             System.out.println("UCrypto version: " + getVersion());
-            
-            // Encrypt some data (this will also trigger our custom printf)
+
+            // Encrypt some data (this also prints our custom message with -Ducrypto.debug=true)
             System.out.println("Encrypting data...");
             String testData = "Hello World!";
             byte[] encrypted = encrypt(testData.getBytes());
-            
+
             if (encrypted != null) {
                 System.out.println("Original: " + testData);
                 System.out.print("Encrypted bytes: ");
@@ -33,12 +93,33 @@ public class UCryptoDemo {
                     System.out.printf("%02x ", b);
                 }
                 System.out.println();
+
+                // Encrypt many small messages packed into one direct buffer with a single native call
+                int count = 10000;
+                byte[] message = testData.getBytes();
+                ByteBuffer packed = ByteBuffer.allocateDirect(count * message.length);
+                int[] offsets = new int[count];
+                int[] lengths = new int[count];
+                for (int i = 0; i < count; i++) {
+                    offsets[i] = packed.position();
+                    lengths[i] = message.length;
+                    packed.put(message);
+                }
+                encryptBatch(packed, offsets, lengths, count);
+                boolean batchMatches = true;
+                for (int i = 0; i < count; i++) {
+                    for (int j = 0; j < lengths[i]; j++) {
+                        batchMatches &= packed.get(offsets[i] + j) == encrypted[j];
+                    }
+                }
+                System.out.println("Batch of " + count + " messages matches: " + batchMatches);
+
                 System.out.println("UCrypto encryption completed successfully!");
                 System.out.println("UCrypto demo completed successfully!");
             } else {
                 System.out.println("Failed to encrypt data");
             }
-            
+
         } catch (Exception e) {
             System.err.println("Error: " + e.getMessage());
             e.printStackTrace();
@@ -0,0 +1,19 @@
+#!/bin/bash
+
+# Runs the SQLite JNI benchmarks and writes sql-bench-<pagesize>.json.
+# Requires /usr/local/lib/libsqlite_jni.so, built by ../sql/install.sh.
+# Extra arguments are passed to JMH, e.g. ./run.sh PointLookup -p storage=file
+
+set -e
+cd "$(dirname "$0")"
+
+echo "Kernel page size: $(getconf PAGESIZE)"
+
+# 1. Install the SQLiteDemo library the benchmarks depend on
+(cd ../sql && mvn -B -q install -DskipTests)
+
+# 2. Build the benchmark jar
+mvn -B -q package
+
+# 3. Run; compare the JSON from a 4K kernel with one from a 64K kernel (see final.sh)
+java -jar target/sql-benchmarks.jar "$@"
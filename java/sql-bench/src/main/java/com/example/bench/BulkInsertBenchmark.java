@@ -0,0 +1,50 @@
+package com.example.bench;
+
+import com.example.BulkInserter;
+import com.example.SQLiteDemo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/** Inserts of {@link #BATCH_ROWS} rows through {@link BulkInserter}, committed on close. Scores are per row. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BulkInsertBenchmark {
+    static final int BATCH_ROWS = 10_000;
+
+    private long nextKey;
+
+    @Setup(Level.Iteration)
+    public void emptyTable(DatabaseState state) {
+        SQLiteDemo.exec(state.db, "DROP TABLE IF EXISTS ingest; CREATE TABLE ingest (k INTEGER PRIMARY KEY, v TEXT, n REAL)");
+        nextKey = 0;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_ROWS)
+    public long bulkInsert(DatabaseState state) throws InterruptedException {
+        try (BulkInserter inserter = new BulkInserter(state.db, "INSERT INTO ingest (k, v, n) VALUES (?, ?, ?)")) {
+            for (int i = 0; i < BATCH_ROWS; i++) {
+                long k = nextKey++;
+                inserter.add(k, "value-" + k, k * 0.5);
+            }
+            inserter.close();
+            return inserter.rowsInserted();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.bench;
+
+import com.example.BulkInserter;
+import com.example.OpenOptions;
+import com.example.SQLiteDemo;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A populated {@code kv} table, opened with {@link OpenOptions#auto()} and parameterized by
+ * storage ({@code :memory:} vs a file) and by memory-mapped I/O on/off.
+ */
+@State(Scope.Benchmark)
+public class DatabaseState {
+    public static final int ROWS = 100_000;
+    public static final long MMAP_SIZE = 256L * 1024 * 1024;
+
+    @Param({"memory", "file"})
+    public String storage;
+
+    @Param({"on", "off"})
+    public String mmap;
+
+    public long db;
+    public String path;
+    private Path dir;
+
+    @Setup(Level.Trial)
+    public void open() throws Exception {
+        if ("file".equals(storage)) {
+            dir = Files.createTempDirectory("sql-bench");
+            path = dir.resolve("bench.db").toString();
+        } else {
+            path = ":memory:";
+        }
+        db = SQLiteDemo.openDatabase(path, options());
+        SQLiteDemo.exec(db, "CREATE TABLE kv (k INTEGER PRIMARY KEY, v TEXT, n REAL)");
+        try (BulkInserter inserter = new BulkInserter(db, "INSERT INTO kv (k, v, n) VALUES (?, ?, ?)")) {
+            for (long k = 0; k < ROWS; k++) {
+                inserter.add(k, "value-" + k, k * 0.5);
+            }
+        }
+    }
+
+    public OpenOptions options() {
+        return OpenOptions.auto().mmapSize("on".equals(mmap) ? MMAP_SIZE : 0);
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws IOException {
+        SQLiteDemo.closeDatabase(db);
+        if (dir != null) {
+            try (var files = Files.list(dir)) {
+                for (Path p : (Iterable<Path>) files::iterator) {
+                    Files.deleteIfExists(p);
+                }
+            }
+            Files.deleteIfExists(dir);
+        }
+    }
+}
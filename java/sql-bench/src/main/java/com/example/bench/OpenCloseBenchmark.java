@@ -0,0 +1,39 @@
+package com.example.bench;
+
+import com.example.SQLiteDemo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Opens a connection with the tuning pragmas applied, runs one query so the schema and
+ * first pages are actually read, and closes it again.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OpenCloseBenchmark {
+
+    @Benchmark
+    public long openQueryClose(DatabaseState state) {
+        long db = SQLiteDemo.openDatabase(state.path, state.options());
+        try {
+            long stmt = SQLiteDemo.prepare(db, "SELECT count(*) FROM sqlite_schema");
+            try {
+                return SQLiteDemo.step(stmt) ? SQLiteDemo.columnLong(stmt, 0) : -1;
+            } finally {
+                SQLiteDemo.release(stmt);
+            }
+        } finally {
+            SQLiteDemo.closeDatabase(db);
+        }
+    }
+}
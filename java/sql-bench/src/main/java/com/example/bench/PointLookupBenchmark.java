@@ -0,0 +1,33 @@
+package com.example.bench;
+
+import com.example.SQLiteDemo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/** Primary-key lookups through the cached prepared statement. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PointLookupBenchmark {
+
+    @Benchmark
+    public long pointLookup(DatabaseState state) {
+        long stmt = SQLiteDemo.prepare(state.db, "SELECT n FROM kv WHERE k = ?");
+        try {
+            SQLiteDemo.bindLong(stmt, 1, ThreadLocalRandom.current().nextInt(DatabaseState.ROWS));
+            return SQLiteDemo.step(stmt) ? SQLiteDemo.columnLong(stmt, 0) : -1;
+        } finally {
+            SQLiteDemo.release(stmt);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.bench;
+
+import com.example.SQLiteCursor;
+import com.example.SQLiteDemo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scans of {@link #SCAN_ROWS} consecutive keys, once through the batched {@link SQLiteCursor}
+ * and once with a JNI call per step and per column. Scores are per row.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class RangeScanBenchmark {
+    static final int SCAN_ROWS = 1000;
+    static final String SCAN_SQL = "SELECT k, v, n FROM kv WHERE k >= ? AND k < ?";
+
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(SQLiteCursor.DEFAULT_BUFFER_SIZE);
+
+    @Benchmark
+    @OperationsPerInvocation(SCAN_ROWS)
+    public long cursorScan(DatabaseState state) {
+        long stmt = bindRange(state.db);
+        long sum = 0;
+        try (SQLiteCursor cursor = new SQLiteCursor(stmt, buffer, Integer.MAX_VALUE)) {
+            while (cursor.next()) {
+                sum += cursor.getLong(0) + cursor.getLength(1) + (long) cursor.getDouble(2);
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SCAN_ROWS)
+    public long stepScan(DatabaseState state) {
+        long stmt = bindRange(state.db);
+        long sum = 0;
+        try {
+            while (SQLiteDemo.step(stmt)) {
+                sum += SQLiteDemo.columnLong(stmt, 0) + SQLiteDemo.columnText(stmt, 1).length()
+                        + (long) SQLiteDemo.columnDouble(stmt, 2);
+            }
+        } finally {
+            SQLiteDemo.release(stmt);
+        }
+        return sum;
+    }
+
+    private static long bindRange(long db) {
+        long stmt = SQLiteDemo.prepare(db, SCAN_SQL);
+        long start = ThreadLocalRandom.current().nextInt(DatabaseState.ROWS - SCAN_ROWS);
+        SQLiteDemo.bindLong(stmt, 1, start);
+        SQLiteDemo.bindLong(stmt, 2, start + SCAN_ROWS);
+        return stmt;
+    }
+}
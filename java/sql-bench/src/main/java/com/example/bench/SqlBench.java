@@ -0,0 +1,43 @@
+package com.example.bench;
+
+import com.example.SQLiteDemo;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Runs the benchmarks (accepting the usual JMH command line, e.g. a name regex) and writes
+ * {@code sql-bench-<pagesize>.json}: the JMH JSON results wrapped with the OS page size,
+ * kernel release and architecture, so runs before and after {@code final.sh} switches
+ * kernels can be diffed directly.
+ */
+public class SqlBench {
+    public static void main(String[] args) throws Exception {
+        int pageSize = SQLiteDemo.getPageSize();
+        Path raw = Files.createTempFile("sql-bench", ".json");
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .resultFormat(ResultFormatType.JSON)
+                .result(raw.toString())
+                .build();
+        new Runner(options).run();
+
+        Path out = Paths.get("sql-bench-" + pageSize + ".json");
+        String results = Files.readString(raw).trim();
+        Files.writeString(out, "{\n"
+                + "  \"pageSize\": " + pageSize + ",\n"
+                + "  \"kernel\": \"" + System.getProperty("os.version") + "\",\n"
+                + "  \"arch\": \"" + System.getProperty("os.arch") + "\",\n"
+                + "  \"sqliteVersion\": \"" + SQLiteDemo.getVersion() + "\",\n"
+                + "  \"results\": " + results + "\n"
+                + "}\n");
+        Files.delete(raw);
+        System.out.println("Results written to " + out.toAbsolutePath());
+    }
+}
@@ -3,28 +3,916 @@
 #include <stdio.h>
 #include <stdlib.h>
 #include <stdint.h>
+#include <string.h>
+#include <unistd.h>
+#include <time.h>
+#include <pthread.h>
+
+/* Number of prepared statements kept per connection before the least recently used one is finalized. */
+#define STMT_CACHE_CAPACITY 64
+
+struct jni_db;
+
+/*
+ * Per-SQL execution statistics shared by every connection, updated with relaxed atomics so
+ * recording never takes a lock. Latencies go into a log-linear histogram (HdrHistogram
+ * style): values below 8 ns get their own bucket, above that each power of two is split
+ * into 8 linear sub-buckets, i.e. about 12% relative precision. LatencyHistogram.java
+ * mirrors the bucket layout.
+ */
+#define HIST_SUB_BITS 3
+#define HIST_SUB_COUNT (1 << HIST_SUB_BITS)
+#define HIST_BUCKETS ((64 - HIST_SUB_BITS + 1) * HIST_SUB_COUNT)
+#define STATS_MAX_ENTRIES 1024
+/* Fixed fields exported before the histogram by statementStats */
+#define STATS_FIXED_FIELDS 5
+
+typedef struct sql_stats {
+    char *sql;
+    uint32_t hash;
+    int64_t executions;
+    int64_t steps;
+    int64_t rows;
+    int64_t total_ns;
+    int64_t max_ns;
+    int64_t hist[HIST_BUCKETS];
+} sql_stats;
+
+static sql_stats *stats_table[STATS_MAX_ENTRIES];
+static int stats_count;
+static pthread_mutex_t stats_lock = PTHREAD_MUTEX_INITIALIZER;
+static int metrics_enabled;
+
+/*
+ * A prepared statement handed out to Java. Cached statements stay in their
+ * connection's LRU list between uses; uncached ones (created while the cached
+ * copy of the same SQL is checked out) are finalized on release.
+ */
+typedef struct jni_stmt {
+    sqlite3_stmt *stmt;
+    struct jni_db *owner;
+    char *sql;
+    uint32_t hash;
+    int cached;
+    int in_use;
+    int pending_row;  /* fetchRows stopped on a row that did not fit; emit it before stepping again */
+    sql_stats *stats; /* looked up on first timed step */
+    int64_t exec_ns;  /* time spent in sqlite3_step since the last reset */
+    int64_t exec_steps;
+    int64_t exec_rows;
+    struct jni_stmt *prev;
+    struct jni_stmt *next;
+} jni_stmt;
+
+/* Connection handle returned by openDatabase: the sqlite3 connection plus its statement cache. */
+typedef struct jni_db {
+    sqlite3 *db;
+    jni_stmt *head;   /* most recently used */
+    jni_stmt *tail;   /* least recently used */
+    int cached_count;
+} jni_db;
+
+static jclass sqliteExceptionClass;
+static jmethodID sqliteExceptionCtor;
+
+JNIEXPORT jint JNICALL JNI_OnLoad(JavaVM *vm, void *reserved) {
+    JNIEnv *env;
+    if ((*vm)->GetEnv(vm, (void **)&env, JNI_VERSION_1_8) != JNI_OK) {
+        return JNI_ERR;
+    }
+    jclass cls = (*env)->FindClass(env, "com/example/SQLiteException");
+    if (cls == NULL) {
+        return JNI_ERR;
+    }
+    sqliteExceptionClass = (*env)->NewGlobalRef(env, cls);
+    sqliteExceptionCtor = (*env)->GetMethodID(env, cls, "<init>", "(Ljava/lang/String;I)V");
+    return JNI_VERSION_1_8;
+}
+
+static void throw_message(JNIEnv *env, const char *msg, int rc) {
+    jstring jmsg = (*env)->NewStringUTF(env, msg);
+    jobject ex = (*env)->NewObject(env, sqliteExceptionClass, sqliteExceptionCtor, jmsg, (jint)rc);
+    if (ex != NULL) {
+        (*env)->Throw(env, (jthrowable)ex);
+    }
+}
+
+static void throw_sqlite(JNIEnv *env, sqlite3 *db, int rc) {
+    throw_message(env, db ? sqlite3_errmsg(db) : sqlite3_errstr(rc), rc);
+}
+
+static uint32_t hash_sql(const char *sql) {
+    uint32_t h = 2166136261u;
+    for (const unsigned char *p = (const unsigned char *)sql; *p; p++) {
+        h = (h ^ *p) * 16777619u;
+    }
+    return h;
+}
+
+static int64_t now_ns(void) {
+    struct timespec ts;
+    clock_gettime(CLOCK_MONOTONIC, &ts);
+    return (int64_t)ts.tv_sec * 1000000000 + ts.tv_nsec;
+}
+
+static int hist_bucket(int64_t value) {
+    if (value < HIST_SUB_COUNT) {
+        return value < 0 ? 0 : (int)value;
+    }
+    int msb = 63 - __builtin_clzll((uint64_t)value);
+    int sub = (int)((value >> (msb - HIST_SUB_BITS)) & (HIST_SUB_COUNT - 1));
+    return (msb - HIST_SUB_BITS + 1) * HIST_SUB_COUNT + sub;
+}
+
+/* Finds or creates the statistics entry for a SQL text; SQL beyond the table limit shares the last slot. */
+static sql_stats *stats_for(const char *sql, uint32_t hash) {
+    pthread_mutex_lock(&stats_lock);
+    sql_stats *found = NULL;
+    for (int i = 0; i < stats_count; i++) {
+        if (stats_table[i]->hash == hash && strcmp(stats_table[i]->sql, sql) == 0) {
+            found = stats_table[i];
+            break;
+        }
+    }
+    if (found == NULL && stats_count < STATS_MAX_ENTRIES) {
+        found = calloc(1, sizeof(sql_stats));
+        if (found != NULL) {
+            found->sql = strdup(stats_count == STATS_MAX_ENTRIES - 1 ? "(other)" : sql);
+            found->hash = hash;
+            stats_table[stats_count] = found;
+            __atomic_store_n(&stats_count, stats_count + 1, __ATOMIC_RELEASE);
+        }
+    } else if (found == NULL) {
+        found = stats_table[STATS_MAX_ENTRIES - 1];
+    }
+    pthread_mutex_unlock(&stats_lock);
+    return found;
+}
+
+/* Folds the current execution of a statement into its shared statistics. */
+static void finish_execution(jni_stmt *s) {
+    sql_stats *st = s->stats;
+    if (st == NULL || s->exec_steps == 0) {
+        return;
+    }
+    __atomic_fetch_add(&st->executions, 1, __ATOMIC_RELAXED);
+    __atomic_fetch_add(&st->steps, s->exec_steps, __ATOMIC_RELAXED);
+    __atomic_fetch_add(&st->rows, s->exec_rows, __ATOMIC_RELAXED);
+    __atomic_fetch_add(&st->total_ns, s->exec_ns, __ATOMIC_RELAXED);
+    __atomic_fetch_add(&st->hist[hist_bucket(s->exec_ns)], 1, __ATOMIC_RELAXED);
+    int64_t max = __atomic_load_n(&st->max_ns, __ATOMIC_RELAXED);
+    while (s->exec_ns > max
+           && !__atomic_compare_exchange_n(&st->max_ns, &max, s->exec_ns, 1, __ATOMIC_RELAXED, __ATOMIC_RELAXED)) {
+    }
+    s->exec_ns = 0;
+    s->exec_steps = 0;
+    s->exec_rows = 0;
+}
+
+/* sqlite3_step, timed into the statement's statistics while metrics are enabled. */
+static int timed_step(jni_stmt *s) {
+    if (!metrics_enabled) {
+        return sqlite3_step(s->stmt);
+    }
+    if (s->stats == NULL) {
+        s->stats = stats_for(s->sql, s->hash);
+    }
+    int64_t start = now_ns();
+    int rc = sqlite3_step(s->stmt);
+    s->exec_ns += now_ns() - start;
+    s->exec_steps++;
+    if (rc == SQLITE_ROW) {
+        s->exec_rows++;
+    } else {
+        finish_execution(s);
+    }
+    return rc;
+}
+
+static void lru_unlink(jni_db *conn, jni_stmt *s) {
+    if (s->prev) s->prev->next = s->next; else conn->head = s->next;
+    if (s->next) s->next->prev = s->prev; else conn->tail = s->prev;
+    s->prev = s->next = NULL;
+}
+
+static void lru_push_front(jni_db *conn, jni_stmt *s) {
+    s->prev = NULL;
+    s->next = conn->head;
+    if (conn->head) conn->head->prev = s; else conn->tail = s;
+    conn->head = s;
+}
+
+static void stmt_destroy(jni_db *conn, jni_stmt *s) {
+    finish_execution(s);
+    lru_unlink(conn, s);
+    if (s->cached) {
+        conn->cached_count--;
+    }
+    sqlite3_finalize(s->stmt);
+    free(s->sql);
+    free(s);
+}
+
+/* Finalizes idle cached statements from the cold end until the cache is back under capacity. */
+static void lru_evict(jni_db *conn) {
+    jni_stmt *s = conn->tail;
+    while (s && conn->cached_count > STMT_CACHE_CAPACITY) {
+        jni_stmt *prev = s->prev;
+        if (s->cached && !s->in_use) {
+            stmt_destroy(conn, s);
+        }
+        s = prev;
+    }
+}
+
+static jni_db *wrap_connection(sqlite3 *db) {
+    jni_db *conn = calloc(1, sizeof(jni_db));
+    if (conn != NULL) {
+        conn->db = db;
+    }
+    return conn;
+}
 
 JNIEXPORT jlong JNICALL Java_com_example_SQLiteDemo_openDatabase(JNIEnv *env, jclass cls, jstring dbPath) {
     printf("****** hello from custom sqlite\n"); fflush(stdout);
-    
+
     const char *path = (*env)->GetStringUTFChars(env, dbPath, 0);
     sqlite3 *db;
     int rc = sqlite3_open(path, &db);
     (*env)->ReleaseStringUTFChars(env, dbPath, path);
-    
+
     if (rc != SQLITE_OK) {
+        sqlite3_close(db);
         return 0;
     }
-    return (jlong)(uintptr_t)db;
+    jni_db *conn = wrap_connection(db);
+    if (conn == NULL) {
+        sqlite3_close(db);
+        return 0;
+    }
+    return (jlong)(uintptr_t)conn;
 }
 
-JNIEXPORT void JNICALL Java_com_example_SQLiteDemo_closeDatabase(JNIEnv *env, jclass cls, jlong dbPtr) {
-    sqlite3 *db = (sqlite3*)(uintptr_t)dbPtr;
-    if (db) {
+static int exec_pragma(sqlite3 *db, const char *sql) {
+    return sqlite3_exec(db, sql, NULL, NULL, NULL);
+}
+
+/*
+ * Opens a connection with sqlite3_open_v2 and applies the tuning pragmas from OpenOptions.
+ * page_size is set first because it cannot change once the database is in WAL mode;
+ * values < 0 (or 0 for pageSize/cacheSizeKib, NULL for journalMode) are left at sqlite's default.
+ */
+JNIEXPORT jlong JNICALL Java_com_example_SQLiteDemo_openDatabaseWithOptions(JNIEnv *env, jclass cls, jstring dbPath,
+        jint flags, jint pageSize, jlong mmapSize, jint cacheSizeKib, jstring journalMode, jint synchronous,
+        jint walAutocheckpoint, jint busyTimeoutMillis) {
+    const char *path = (*env)->GetStringUTFChars(env, dbPath, 0);
+    sqlite3 *db;
+    int rc = sqlite3_open_v2(path, &db, flags, NULL);
+    (*env)->ReleaseStringUTFChars(env, dbPath, path);
+    if (rc != SQLITE_OK) {
+        throw_sqlite(env, db, rc);
+        sqlite3_close(db);
+        return 0;
+    }
+
+    char sql[128];
+    if (busyTimeoutMillis >= 0) {
+        sqlite3_busy_timeout(db, busyTimeoutMillis);
+    }
+    if (rc == SQLITE_OK && pageSize > 0) {
+        snprintf(sql, sizeof(sql), "PRAGMA page_size=%d", (int)pageSize);
+        rc = exec_pragma(db, sql);
+    }
+    if (rc == SQLITE_OK && journalMode != NULL) {
+        const char *mode = (*env)->GetStringUTFChars(env, journalMode, 0);
+        int valid = strlen(mode) < 16;
+        for (const char *p = mode; *p; p++) {
+            valid &= (*p >= 'A' && *p <= 'Z') || (*p >= 'a' && *p <= 'z');
+        }
+        if (valid) {
+            snprintf(sql, sizeof(sql), "PRAGMA journal_mode=%s", mode);
+            rc = exec_pragma(db, sql);
+        } else {
+            rc = SQLITE_MISUSE;
+        }
+        (*env)->ReleaseStringUTFChars(env, journalMode, mode);
+    }
+    if (rc == SQLITE_OK && synchronous >= 0) {
+        snprintf(sql, sizeof(sql), "PRAGMA synchronous=%d", (int)synchronous);
+        rc = exec_pragma(db, sql);
+    }
+    if (rc == SQLITE_OK && cacheSizeKib > 0) {
+        snprintf(sql, sizeof(sql), "PRAGMA cache_size=-%d", (int)cacheSizeKib);
+        rc = exec_pragma(db, sql);
+    }
+    if (rc == SQLITE_OK && mmapSize >= 0) {
+        snprintf(sql, sizeof(sql), "PRAGMA mmap_size=%lld", (long long)mmapSize);
+        rc = exec_pragma(db, sql);
+    }
+    if (rc == SQLITE_OK && walAutocheckpoint >= 0) {
+        snprintf(sql, sizeof(sql), "PRAGMA wal_autocheckpoint=%d", (int)walAutocheckpoint);
+        rc = exec_pragma(db, sql);
+    }
+
+    jni_db *conn = rc == SQLITE_OK ? wrap_connection(db) : NULL;
+    if (conn == NULL) {
+        if (rc == SQLITE_OK || rc == SQLITE_MISUSE) {
+            throw_sqlite(env, NULL, rc == SQLITE_OK ? SQLITE_NOMEM : rc);
+        } else {
+            throw_sqlite(env, db, rc);
+        }
         sqlite3_close(db);
+        return 0;
+    }
+    return (jlong)(uintptr_t)conn;
+}
+
+JNIEXPORT jint JNICALL Java_com_example_SQLiteDemo_getPageSize(JNIEnv *env, jclass cls) {
+    return (jint)sysconf(_SC_PAGESIZE);
+}
+
+JNIEXPORT void JNICALL Java_com_example_SQLiteDemo_closeDatabase(JNIEnv *env, jclass cls, jlong dbPtr) {
+    jni_db *conn = (jni_db*)(uintptr_t)dbPtr;
+    if (conn) {
+        while (conn->head) {
+            stmt_destroy(conn, conn->head);
+        }
+        sqlite3_close(conn->db);
+        free(conn);
     }
 }
 
 JNIEXPORT jstring JNICALL Java_com_example_SQLiteDemo_getVersion(JNIEnv *env, jclass cls) {
     return (*env)->NewStringUTF(env, sqlite3_libversion());
 }
+
+JNIEXPORT void JNICALL Java_com_example_SQLiteDemo_exec(JNIEnv *env, jclass cls, jlong dbPtr, jstring sql) {
+    jni_db *conn = (jni_db*)(uintptr_t)dbPtr;
+    const char *text = (*env)->GetStringUTFChars(env, sql, 0);
+    int rc = sqlite3_exec(conn->db, text, NULL, NULL, NULL);
+    (*env)->ReleaseStringUTFChars(env, sql, text);
+    if (rc != SQLITE_OK) {
+        throw_sqlite(env, conn->db, rc);
+    }
+}
+
+JNIEXPORT jlong JNICALL Java_com_example_SQLiteDemo_prepare(JNIEnv *env, jclass cls, jlong dbPtr, jstring sql) {
+    jni_db *conn = (jni_db*)(uintptr_t)dbPtr;
+    const char *text = (*env)->GetStringUTFChars(env, sql, 0);
+    uint32_t hash = hash_sql(text);
+    int busy = 0;
+
+    for (jni_stmt *s = conn->head; s; s = s->next) {
+        if (s->cached && s->hash == hash && strcmp(s->sql, text) == 0) {
+            if (s->in_use) {
+                busy = 1;
+                break;
+            }
+            (*env)->ReleaseStringUTFChars(env, sql, text);
+            s->in_use = 1;
+            lru_unlink(conn, s);
+            lru_push_front(conn, s);
+            return (jlong)(uintptr_t)s;
+        }
+    }
+
+    sqlite3_stmt *stmt;
+    int rc = sqlite3_prepare_v3(conn->db, text, -1, busy ? 0 : SQLITE_PREPARE_PERSISTENT, &stmt, NULL);
+    if (rc != SQLITE_OK) {
+        (*env)->ReleaseStringUTFChars(env, sql, text);
+        throw_sqlite(env, conn->db, rc);
+        return 0;
+    }
+    jni_stmt *s = calloc(1, sizeof(jni_stmt));
+    char *copy = strdup(text);
+    (*env)->ReleaseStringUTFChars(env, sql, text);
+    if (s == NULL || copy == NULL) {
+        sqlite3_finalize(stmt);
+        free(s);
+        free(copy);
+        throw_sqlite(env, NULL, SQLITE_NOMEM);
+        return 0;
+    }
+    s->stmt = stmt;
+    s->owner = conn;
+    s->sql = copy;
+    s->hash = hash;
+    s->cached = !busy;
+    s->in_use = 1;
+    lru_push_front(conn, s);
+    if (s->cached) {
+        conn->cached_count++;
+        lru_evict(conn);
+    }
+    return (jlong)(uintptr_t)s;
+}
+
+JNIEXPORT void JNICALL Java_com_example_SQLiteDemo_release(JNIEnv *env, jclass cls, jlong stmtPtr) {
+    jni_stmt *s = (jni_stmt*)(uintptr_t)stmtPtr;
+    if (!s->cached) {
+        stmt_destroy(s->owner, s);
+        return;
+    }
+    finish_execution(s);
+    sqlite3_reset(s->stmt);
+    sqlite3_clear_bindings(s->stmt);
+    s->in_use = 0;
+    s->pending_row = 0;
+    lru_evict(s->owner);
+}
+
+JNIEXPORT void JNICALL Java_com_example_SQLiteDemo_reset(JNIEnv *env, jclass cls, jlong stmtPtr) {
+    jni_stmt *s = (jni_stmt*)(uintptr_t)stmtPtr;
+    finish_execution(s);
+    sqlite3_reset(s->stmt);
+    s->pending_row = 0;
+}
+
+JNIEXPORT jboolean JNICALL Java_com_example_SQLiteDemo_step(JNIEnv *env, jclass cls, jlong stmtPtr) {
+    jni_stmt *s = (jni_stmt*)(uintptr_t)stmtPtr;
+    int rc = timed_step(s);
+    if (rc == SQLITE_ROW) {
+        return JNI_TRUE;
+    }
+    if (rc != SQLITE_DONE) {
+        throw_sqlite(env, s->owner->db, rc);
+    }
+    return JNI_FALSE;
+}
+
+JNIEXPORT void JNICALL Java_com_example_SQLiteDemo_bindLong(JNIEnv *env, jclass cls, jlong stmtPtr, jint index, jlong value) {
+    jni_stmt *s = (jni_stmt*)(uintptr_t)stmtPtr;
+    int rc = sqlite3_bind_int64(s->stmt, index, value);
+    if (rc != SQLITE_OK) {
+        throw_sqlite(env, s->owner->db, rc);
+    }
+}
+
+JNIEXPORT void JNICALL Java_com_example_SQLiteDemo_bindDouble(JNIEnv *env, jclass cls, jlong stmtPtr, jint index, jdouble value) {
+    jni_stmt *s = (jni_stmt*)(uintptr_t)stmtPtr;
+    int rc = sqlite3_bind_double(s->stmt, index, value);
+    if (rc != SQLITE_OK) {
+        throw_sqlite(env, s->owner->db, rc);
+    }
+}
+
+JNIEXPORT void JNICALL Java_com_example_SQLiteDemo_bindText(JNIEnv *env, jclass cls, jlong stmtPtr, jint index, jstring value) {
+    jni_stmt *s = (jni_stmt*)(uintptr_t)stmtPtr;
+    int rc;
+    if (value == NULL) {
+        rc = sqlite3_bind_null(s->stmt, index);
+    } else {
+        jsize len = (*env)->GetStringLength(env, value);
+        const jchar *chars = (*env)->GetStringCritical(env, value, NULL);
+        rc = sqlite3_bind_text16(s->stmt, index, chars, len * (int)sizeof(jchar), SQLITE_TRANSIENT);
+        (*env)->ReleaseStringCritical(env, value, chars);
+    }
+    if (rc != SQLITE_OK) {
+        throw_sqlite(env, s->owner->db, rc);
+    }
+}
+
+JNIEXPORT void JNICALL Java_com_example_SQLiteDemo_bindBlob(JNIEnv *env, jclass cls, jlong stmtPtr, jint index, jbyteArray value) {
+    jni_stmt *s = (jni_stmt*)(uintptr_t)stmtPtr;
+    int rc;
+    if (value == NULL) {
+        rc = sqlite3_bind_null(s->stmt, index);
+    } else {
+        jsize len = (*env)->GetArrayLength(env, value);
+        void *bytes = (*env)->GetPrimitiveArrayCritical(env, value, NULL);
+        rc = sqlite3_bind_blob(s->stmt, index, bytes, len, SQLITE_TRANSIENT);
+        (*env)->ReleasePrimitiveArrayCritical(env, value, bytes, JNI_ABORT);
+    }
+    if (rc != SQLITE_OK) {
+        throw_sqlite(env, s->owner->db, rc);
+    }
+}
+
+JNIEXPORT void JNICALL Java_com_example_SQLiteDemo_bindZeroBlob(JNIEnv *env, jclass cls, jlong stmtPtr, jint index, jint length) {
+    jni_stmt *s = (jni_stmt*)(uintptr_t)stmtPtr;
+    int rc = sqlite3_bind_zeroblob(s->stmt, index, length);
+    if (rc != SQLITE_OK) {
+        throw_sqlite(env, s->owner->db, rc);
+    }
+}
+
+JNIEXPORT void JNICALL Java_com_example_SQLiteDemo_bindNull(JNIEnv *env, jclass cls, jlong stmtPtr, jint index) {
+    jni_stmt *s = (jni_stmt*)(uintptr_t)stmtPtr;
+    int rc = sqlite3_bind_null(s->stmt, index);
+    if (rc != SQLITE_OK) {
+        throw_sqlite(env, s->owner->db, rc);
+    }
+}
+
+JNIEXPORT jint JNICALL Java_com_example_SQLiteDemo_bindParameterCount(JNIEnv *env, jclass cls, jlong stmtPtr) {
+    jni_stmt *s = (jni_stmt*)(uintptr_t)stmtPtr;
+    return sqlite3_bind_parameter_count(s->stmt);
+}
+
+JNIEXPORT jint JNICALL Java_com_example_SQLiteDemo_columnCount(JNIEnv *env, jclass cls, jlong stmtPtr) {
+    jni_stmt *s = (jni_stmt*)(uintptr_t)stmtPtr;
+    return sqlite3_column_count(s->stmt);
+}
+
+JNIEXPORT jint JNICALL Java_com_example_SQLiteDemo_columnType(JNIEnv *env, jclass cls, jlong stmtPtr, jint column) {
+    jni_stmt *s = (jni_stmt*)(uintptr_t)stmtPtr;
+    return sqlite3_column_type(s->stmt, column);
+}
+
+JNIEXPORT jlong JNICALL Java_com_example_SQLiteDemo_columnLong(JNIEnv *env, jclass cls, jlong stmtPtr, jint column) {
+    jni_stmt *s = (jni_stmt*)(uintptr_t)stmtPtr;
+    return sqlite3_column_int64(s->stmt, column);
+}
+
+JNIEXPORT jdouble JNICALL Java_com_example_SQLiteDemo_columnDouble(JNIEnv *env, jclass cls, jlong stmtPtr, jint column) {
+    jni_stmt *s = (jni_stmt*)(uintptr_t)stmtPtr;
+    return sqlite3_column_double(s->stmt, column);
+}
+
+JNIEXPORT jstring JNICALL Java_com_example_SQLiteDemo_columnText(JNIEnv *env, jclass cls, jlong stmtPtr, jint column) {
+    jni_stmt *s = (jni_stmt*)(uintptr_t)stmtPtr;
+    const jchar *text = sqlite3_column_text16(s->stmt, column);
+    if (text == NULL) {
+        return NULL;
+    }
+    int bytes = sqlite3_column_bytes16(s->stmt, column);
+    return (*env)->NewString(env, text, bytes / (int)sizeof(jchar));
+}
+
+JNIEXPORT jbyteArray JNICALL Java_com_example_SQLiteDemo_columnBlob(JNIEnv *env, jclass cls, jlong stmtPtr, jint column) {
+    jni_stmt *s = (jni_stmt*)(uintptr_t)stmtPtr;
+    const void *blob = sqlite3_column_blob(s->stmt, column);
+    int len = sqlite3_column_bytes(s->stmt, column);
+    if (blob == NULL && sqlite3_column_type(s->stmt, column) == SQLITE_NULL) {
+        return NULL;
+    }
+    jbyteArray result = (*env)->NewByteArray(env, len);
+    if (result != NULL && len > 0) {
+        (*env)->SetByteArrayRegion(env, result, 0, len, (const jbyte *)blob);
+    }
+    return result;
+}
+
+/*
+ * Steps the statement and packs up to maxRows rows into a direct ByteBuffer (native byte order):
+ *
+ *   header  : int rowCount, int flags (FETCH_DONE), int columnCount, int rowStride
+ *   rows    : rowStride bytes each, starting at FETCH_HEADER_SIZE:
+ *             columnCount type bytes padded to 8, then one 8-byte slot per column
+ *             (int64, double, or int offset + int length for TEXT/BLOB, 0 for NULL)
+ *   var data: TEXT (UTF-8) and BLOB bytes, packed downwards from the end of the buffer
+ *
+ * Returns rowCount. A row that does not fit is left pending and emitted first on the next call.
+ */
+#define FETCH_HEADER_SIZE 16
+#define FETCH_DONE 1
+
+static int row_var_bytes(sqlite3_stmt *stmt, int ncol) {
+    int total = 0;
+    for (int c = 0; c < ncol; c++) {
+        int type = sqlite3_column_type(stmt, c);
+        if (type == SQLITE_TEXT) {
+            sqlite3_column_text(stmt, c);
+            total += sqlite3_column_bytes(stmt, c);
+        } else if (type == SQLITE_BLOB) {
+            total += sqlite3_column_bytes(stmt, c);
+        }
+    }
+    return total;
+}
+
+JNIEXPORT jint JNICALL Java_com_example_SQLiteDemo_fetchRows(JNIEnv *env, jclass cls, jlong stmtPtr, jobject buffer, jint maxRows) {
+    jni_stmt *s = (jni_stmt*)(uintptr_t)stmtPtr;
+    char *base = (*env)->GetDirectBufferAddress(env, buffer);
+    jlong capacity = (*env)->GetDirectBufferCapacity(env, buffer);
+    if (base == NULL || capacity < FETCH_HEADER_SIZE || capacity > INT32_MAX) {
+        throw_message(env, "fetchRows requires a direct ByteBuffer of 16 bytes to 2 GB", SQLITE_MISUSE);
+        return 0;
+    }
+    int ncol = sqlite3_column_count(s->stmt);
+    int typeBytes = (ncol + 7) & ~7;
+    int stride = typeBytes + ncol * 8;
+    int rowPos = FETCH_HEADER_SIZE;
+    int varPos = (int)capacity;
+    int rows = 0;
+    int flags = 0;
+
+    while (rows < maxRows) {
+        if (!s->pending_row) {
+            int rc = timed_step(s);
+            if (rc == SQLITE_DONE) {
+                flags |= FETCH_DONE;
+                break;
+            }
+            if (rc != SQLITE_ROW) {
+                throw_sqlite(env, s->owner->db, rc);
+                return 0;
+            }
+        }
+        int need = row_var_bytes(s->stmt, ncol);
+        if ((jlong)rowPos + stride + need > varPos) {
+            s->pending_row = 1;
+            if (rows == 0) {
+                throw_message(env, "fetchRows buffer is too small for a single row", SQLITE_TOOBIG);
+                return 0;
+            }
+            break;
+        }
+        s->pending_row = 0;
+
+        unsigned char *types = (unsigned char *)base + rowPos;
+        char *slots = base + rowPos + typeBytes;
+        memset(types, 0, typeBytes);
+        for (int c = 0; c < ncol; c++) {
+            int type = sqlite3_column_type(s->stmt, c);
+            char *slot = slots + c * 8;
+            types[c] = (unsigned char)type;
+            if (type == SQLITE_INTEGER) {
+                int64_t v = sqlite3_column_int64(s->stmt, c);
+                memcpy(slot, &v, 8);
+            } else if (type == SQLITE_FLOAT) {
+                double v = sqlite3_column_double(s->stmt, c);
+                memcpy(slot, &v, 8);
+            } else if (type == SQLITE_TEXT || type == SQLITE_BLOB) {
+                const void *data = type == SQLITE_TEXT
+                    ? (const void *)sqlite3_column_text(s->stmt, c)
+                    : sqlite3_column_blob(s->stmt, c);
+                int32_t len = sqlite3_column_bytes(s->stmt, c);
+                varPos -= len;
+                int32_t off = varPos;
+                if (len > 0) {
+                    memcpy(base + varPos, data, len);
+                }
+                memcpy(slot, &off, 4);
+                memcpy(slot + 4, &len, 4);
+            } else {
+                memset(slot, 0, 8);
+            }
+        }
+        rowPos += stride;
+        rows++;
+    }
+
+    int32_t header[4] = { rows, flags, ncol, stride };
+    memcpy(base, header, sizeof(header));
+    return rows;
+}
+
+/*
+ * Binds and steps the statement once per row encoded in a direct ByteBuffer (native byte order).
+ * Each row holds one value per statement parameter: a type byte (SQLITE_INTEGER, SQLITE_FLOAT,
+ * SQLITE_TEXT, SQLITE_BLOB or SQLITE_NULL) followed by an int64, a double, an int32 length plus
+ * UTF-8/blob bytes, or nothing. Values are bound SQLITE_STATIC straight from the buffer.
+ * Rows carry no value count, so callers must encode exactly bindParameterCount values per row
+ * (BulkInserter checks this in add). Returns the number of rows inserted.
+ */
+JNIEXPORT jint JNICALL Java_com_example_SQLiteDemo_insertBatch(JNIEnv *env, jclass cls, jlong stmtPtr, jobject buffer, jint length, jint rowCount) {
+    jni_stmt *s = (jni_stmt*)(uintptr_t)stmtPtr;
+    const char *base = (*env)->GetDirectBufferAddress(env, buffer);
+    jlong capacity = (*env)->GetDirectBufferCapacity(env, buffer);
+    if (base == NULL || length < 0 || length > capacity) {
+        throw_message(env, "insertBatch requires a direct ByteBuffer holding the encoded rows", SQLITE_MISUSE);
+        return 0;
+    }
+    int nparams = sqlite3_bind_parameter_count(s->stmt);
+    const char *p = base;
+    const char *end = base + length;
+    int rows = 0;
+
+    for (; rows < rowCount; rows++) {
+        for (int i = 1; i <= nparams; i++) {
+            if (p >= end) {
+                goto truncated;
+            }
+            int type = *p++;
+            int rc;
+            if (type == SQLITE_INTEGER || type == SQLITE_FLOAT) {
+                if (end - p < 8) {
+                    goto truncated;
+                }
+                if (type == SQLITE_INTEGER) {
+                    int64_t v;
+                    memcpy(&v, p, 8);
+                    rc = sqlite3_bind_int64(s->stmt, i, v);
+                } else {
+                    double v;
+                    memcpy(&v, p, 8);
+                    rc = sqlite3_bind_double(s->stmt, i, v);
+                }
+                p += 8;
+            } else if (type == SQLITE_TEXT || type == SQLITE_BLOB) {
+                int32_t len;
+                if (end - p < 4) {
+                    goto truncated;
+                }
+                memcpy(&len, p, 4);
+                p += 4;
+                if (len < 0 || end - p < len) {
+                    goto truncated;
+                }
+                rc = type == SQLITE_TEXT
+                    ? sqlite3_bind_text(s->stmt, i, p, len, SQLITE_STATIC)
+                    : sqlite3_bind_blob(s->stmt, i, p, len, SQLITE_STATIC);
+                p += len;
+            } else {
+                rc = sqlite3_bind_null(s->stmt, i);
+            }
+            if (rc != SQLITE_OK) {
+                sqlite3_clear_bindings(s->stmt);
+                throw_sqlite(env, s->owner->db, rc);
+                return rows;
+            }
+        }
+        int rc = timed_step(s);
+        finish_execution(s);
+        sqlite3_reset(s->stmt);
+        if (rc != SQLITE_DONE && rc != SQLITE_ROW) {
+            sqlite3_clear_bindings(s->stmt);
+            throw_sqlite(env, s->owner->db, rc);
+            return rows;
+        }
+    }
+    /* Bindings point into the Java buffer; drop them before it is reused. */
+    sqlite3_clear_bindings(s->stmt);
+    return rows;
+
+truncated:
+    sqlite3_clear_bindings(s->stmt);
+    throw_message(env, "insertBatch buffer ends in the middle of a row", SQLITE_MISUSE);
+    return rows;
+}
+
+/* Incremental BLOB I/O handle; keeps the connection for error messages. */
+typedef struct jni_blob {
+    sqlite3_blob *blob;
+    sqlite3 *db;
+} jni_blob;
+
+JNIEXPORT jlong JNICALL Java_com_example_SQLiteDemo_blobOpen(JNIEnv *env, jclass cls, jlong dbPtr, jstring dbName,
+        jstring table, jstring column, jlong rowid, jboolean writable) {
+    jni_db *conn = (jni_db*)(uintptr_t)dbPtr;
+    const char *schema = (*env)->GetStringUTFChars(env, dbName, 0);
+    const char *tbl = (*env)->GetStringUTFChars(env, table, 0);
+    const char *col = (*env)->GetStringUTFChars(env, column, 0);
+    sqlite3_blob *blob;
+    int rc = sqlite3_blob_open(conn->db, schema, tbl, col, rowid, writable ? 1 : 0, &blob);
+    (*env)->ReleaseStringUTFChars(env, dbName, schema);
+    (*env)->ReleaseStringUTFChars(env, table, tbl);
+    (*env)->ReleaseStringUTFChars(env, column, col);
+    if (rc != SQLITE_OK) {
+        throw_sqlite(env, conn->db, rc);
+        return 0;
+    }
+    jni_blob *b = malloc(sizeof(jni_blob));
+    if (b == NULL) {
+        sqlite3_blob_close(blob);
+        throw_sqlite(env, NULL, SQLITE_NOMEM);
+        return 0;
+    }
+    b->blob = blob;
+    b->db = conn->db;
+    return (jlong)(uintptr_t)b;
+}
+
+JNIEXPORT jint JNICALL Java_com_example_SQLiteDemo_blobBytes(JNIEnv *env, jclass cls, jlong blobPtr) {
+    jni_blob *b = (jni_blob*)(uintptr_t)blobPtr;
+    return sqlite3_blob_bytes(b->blob);
+}
+
+/* Copies length bytes starting at blobOffset into a direct ByteBuffer at bufferOffset. */
+JNIEXPORT void JNICALL Java_com_example_SQLiteDemo_blobRead(JNIEnv *env, jclass cls, jlong blobPtr, jobject buffer,
+        jint bufferOffset, jint length, jint blobOffset) {
+    jni_blob *b = (jni_blob*)(uintptr_t)blobPtr;
+    char *base = (*env)->GetDirectBufferAddress(env, buffer);
+    jlong capacity = (*env)->GetDirectBufferCapacity(env, buffer);
+    if (base == NULL || bufferOffset < 0 || length < 0 || (jlong)bufferOffset + length > capacity) {
+        throw_message(env, "blobRead requires a direct ByteBuffer with room for the requested range", SQLITE_MISUSE);
+        return;
+    }
+    int rc = sqlite3_blob_read(b->blob, base + bufferOffset, length, blobOffset);
+    if (rc != SQLITE_OK) {
+        throw_sqlite(env, b->db, rc);
+    }
+}
+
+/* Copies length bytes from a direct ByteBuffer at bufferOffset into the blob at blobOffset. */
+JNIEXPORT void JNICALL Java_com_example_SQLiteDemo_blobWrite(JNIEnv *env, jclass cls, jlong blobPtr, jobject buffer,
+        jint bufferOffset, jint length, jint blobOffset) {
+    jni_blob *b = (jni_blob*)(uintptr_t)blobPtr;
+    const char *base = (*env)->GetDirectBufferAddress(env, buffer);
+    jlong capacity = (*env)->GetDirectBufferCapacity(env, buffer);
+    if (base == NULL || bufferOffset < 0 || length < 0 || (jlong)bufferOffset + length > capacity) {
+        throw_message(env, "blobWrite requires a direct ByteBuffer holding the requested range", SQLITE_MISUSE);
+        return;
+    }
+    int rc = sqlite3_blob_write(b->blob, base + bufferOffset, length, blobOffset);
+    if (rc != SQLITE_OK) {
+        throw_sqlite(env, b->db, rc);
+    }
+}
+
+/* Points an open blob handle at another row of the same table and column. */
+JNIEXPORT void JNICALL Java_com_example_SQLiteDemo_blobReopen(JNIEnv *env, jclass cls, jlong blobPtr, jlong rowid) {
+    jni_blob *b = (jni_blob*)(uintptr_t)blobPtr;
+    int rc = sqlite3_blob_reopen(b->blob, rowid);
+    if (rc != SQLITE_OK) {
+        throw_sqlite(env, b->db, rc);
+    }
+}
+
+JNIEXPORT void JNICALL Java_com_example_SQLiteDemo_blobClose(JNIEnv *env, jclass cls, jlong blobPtr) {
+    jni_blob *b = (jni_blob*)(uintptr_t)blobPtr;
+    if (b) {
+        int rc = sqlite3_blob_close(b->blob);
+        sqlite3 *db = b->db;
+        free(b);
+        if (rc != SQLITE_OK) {
+            throw_sqlite(env, db, rc);
+        }
+    }
+}
+
+JNIEXPORT jint JNICALL Java_com_example_SQLiteDemo_changes(JNIEnv *env, jclass cls, jlong dbPtr) {
+    jni_db *conn = (jni_db*)(uintptr_t)dbPtr;
+    return sqlite3_changes(conn->db);
+}
+
+JNIEXPORT jboolean JNICALL Java_com_example_SQLiteDemo_isAutocommit(JNIEnv *env, jclass cls, jlong dbPtr) {
+    jni_db *conn = (jni_db*)(uintptr_t)dbPtr;
+    return sqlite3_get_autocommit(conn->db) ? JNI_TRUE : JNI_FALSE;
+}
+
+JNIEXPORT jlong JNICALL Java_com_example_SQLiteDemo_lastInsertRowid(JNIEnv *env, jclass cls, jlong dbPtr) {
+    jni_db *conn = (jni_db*)(uintptr_t)dbPtr;
+    return sqlite3_last_insert_rowid(conn->db);
+}
+
+/* Current value of a per-connection counter from sqlite3_db_status, e.g. SQLITE_DBSTATUS_CACHE_USED. */
+JNIEXPORT jint JNICALL Java_com_example_SQLiteDemo_dbStatus(JNIEnv *env, jclass cls, jlong dbPtr, jint op) {
+    jni_db *conn = (jni_db*)(uintptr_t)dbPtr;
+    int current = 0;
+    int highwater = 0;
+    int rc = sqlite3_db_status(conn->db, op, &current, &highwater, 0);
+    if (rc != SQLITE_OK) {
+        throw_sqlite(env, NULL, rc);
+    }
+    return current;
+}
+
+JNIEXPORT void JNICALL Java_com_example_SQLiteDemo_setMetricsEnabled(JNIEnv *env, jclass cls, jboolean enabled) {
+    __atomic_store_n(&metrics_enabled, enabled ? 1 : 0, __ATOMIC_RELAXED);
+}
+
+/* Number of distinct SQL texts with statistics; indexes below this stay valid for the process lifetime. */
+JNIEXPORT jint JNICALL Java_com_example_SQLiteDemo_statementStatsCount(JNIEnv *env, jclass cls) {
+    return __atomic_load_n(&stats_count, __ATOMIC_ACQUIRE);
+}
+
+JNIEXPORT jstring JNICALL Java_com_example_SQLiteDemo_statementStatsSql(JNIEnv *env, jclass cls, jint index) {
+    if (index < 0 || index >= __atomic_load_n(&stats_count, __ATOMIC_ACQUIRE)) {
+        return NULL;
+    }
+    return (*env)->NewStringUTF(env, stats_table[index]->sql);
+}
+
+/*
+ * Copies one entry into out: executions, steps, rows, total ns, max ns, then HIST_BUCKETS
+ * histogram counts. Returns the number of longs written.
+ */
+JNIEXPORT jint JNICALL Java_com_example_SQLiteDemo_statementStats(JNIEnv *env, jclass cls, jint index, jlongArray out) {
+    if (index < 0 || index >= __atomic_load_n(&stats_count, __ATOMIC_ACQUIRE)
+            || (*env)->GetArrayLength(env, out) < STATS_FIXED_FIELDS + HIST_BUCKETS) {
+        throw_message(env, "statementStats index out of range or array too small", SQLITE_RANGE);
+        return 0;
+    }
+    sql_stats *st = stats_table[index];
+    jlong values[STATS_FIXED_FIELDS + HIST_BUCKETS];
+    values[0] = __atomic_load_n(&st->executions, __ATOMIC_RELAXED);
+    values[1] = __atomic_load_n(&st->steps, __ATOMIC_RELAXED);
+    values[2] = __atomic_load_n(&st->rows, __ATOMIC_RELAXED);
+    values[3] = __atomic_load_n(&st->total_ns, __ATOMIC_RELAXED);
+    values[4] = __atomic_load_n(&st->max_ns, __ATOMIC_RELAXED);
+    for (int i = 0; i < HIST_BUCKETS; i++) {
+        values[STATS_FIXED_FIELDS + i] = __atomic_load_n(&st->hist[i], __ATOMIC_RELAXED);
+    }
+    (*env)->SetLongArrayRegion(env, out, 0, STATS_FIXED_FIELDS + HIST_BUCKETS, values);
+    return STATS_FIXED_FIELDS + HIST_BUCKETS;
+}
+
+/* sqlite3_status64: writes the current value and high-water mark of a global counter into out[0..1]. */
+JNIEXPORT void JNICALL Java_com_example_SQLiteDemo_status64(JNIEnv *env, jclass cls, jint op, jboolean resetHighwater, jlongArray out) {
+    sqlite3_int64 current = 0;
+    sqlite3_int64 highwater = 0;
+    int rc = sqlite3_status64(op, &current, &highwater, resetHighwater ? 1 : 0);
+    if (rc != SQLITE_OK) {
+        throw_sqlite(env, NULL, rc);
+        return;
+    }
+    jlong values[2] = { current, highwater };
+    (*env)->SetLongArrayRegion(env, out, 0, 2, values);
+}
+
+JNIEXPORT jint JNICALL Java_com_example_SQLiteDemo_cachedStatementCount(JNIEnv *env, jclass cls, jlong dbPtr) {
+    jni_db *conn = (jni_db*)(uintptr_t)dbPtr;
+    return conn->cached_count;
+}
@@ -0,0 +1,253 @@
+package com.example;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Multi-producer bulk loader for a single INSERT statement.
+ *
+ * <p>Producers call {@link #add} from any thread; rows go into a bounded queue.
+ * One writer thread drains the queue, encodes rows into a direct buffer and
+ * hands each full buffer to {@link SQLiteDemo#insertBatch}, so thousands of
+ * rows cross JNI in one call. Rows are committed in explicit transactions of
+ * up to {@code maxRowsPerTransaction} rows or {@code maxBytesPerTransaction}
+ * encoded bytes, or when the queue stays empty for {@link #IDLE_COMMIT_MILLIS}.
+ *
+ * <p>The connection belongs to the writer thread until {@link #close()} returns.
+ */
+public final class BulkInserter implements AutoCloseable {
+    public static final int DEFAULT_QUEUE_CAPACITY = 65536;
+    public static final int DEFAULT_ROWS_PER_TRANSACTION = 50000;
+    public static final int DEFAULT_BYTES_PER_TRANSACTION = 16 * 1024 * 1024;
+    public static final int DEFAULT_BATCH_BUFFER_SIZE = 1024 * 1024;
+    public static final long IDLE_COMMIT_MILLIS = 50;
+
+    private static final Object[] END = new Object[0];
+
+    private final long dbPtr;
+    private final long stmtPtr;
+    private final int parameterCount;
+    private final int maxRowsPerTransaction;
+    private final long maxBytesPerTransaction;
+    private final BlockingQueue<Object[]> queue;
+    private final Thread writer;
+    // add() queues under the read lock and close() sets closed under the write lock, so no row lands behind END
+    private final ReentrantReadWriteLock closeLock = new ReentrantReadWriteLock();
+    private ByteBuffer batch;
+    private int batchRows;
+    private volatile long rowsInserted;
+    private volatile Throwable failure;
+    private volatile boolean closed;
+
+    public BulkInserter(long dbPtr, String insertSql) {
+        this(dbPtr, insertSql, DEFAULT_QUEUE_CAPACITY, DEFAULT_ROWS_PER_TRANSACTION, DEFAULT_BYTES_PER_TRANSACTION);
+    }
+
+    public BulkInserter(long dbPtr, String insertSql, int queueCapacity,
+                        int maxRowsPerTransaction, long maxBytesPerTransaction) {
+        this.dbPtr = dbPtr;
+        // Prepared here so add() can check row widths; the writer thread owns it from start() on
+        this.stmtPtr = SQLiteDemo.prepare(dbPtr, insertSql);
+        this.parameterCount = SQLiteDemo.bindParameterCount(stmtPtr);
+        this.maxRowsPerTransaction = maxRowsPerTransaction;
+        this.maxBytesPerTransaction = maxBytesPerTransaction;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batch = ByteBuffer.allocateDirect(DEFAULT_BATCH_BUFFER_SIZE).order(ByteOrder.nativeOrder());
+        this.writer = new Thread(this::drain, "sqlite-bulk-inserter");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Queues one row, blocking while the queue is full, and rethrows the writer's failure if it
+     * has stopped. Values may be null, integral numbers or Boolean (INTEGER), Float/Double (REAL),
+     * String (TEXT) or byte[] (BLOB).
+     *
+     * @throws IllegalArgumentException if the row does not have one value per statement parameter
+     * @throws IllegalStateException if the inserter is closed, including by another thread while
+     *         this call waited for space; the row is not queued then
+     */
+    public void add(Object... values) throws InterruptedException {
+        checkFailure();
+        if (values.length != parameterCount) {
+            throw new IllegalArgumentException("Row has " + values.length + " values, statement has "
+                    + parameterCount + " parameters");
+        }
+        closeLock.readLock().lockInterruptibly();
+        try {
+            if (closed) {
+                throw new IllegalStateException("BulkInserter is closed");
+            }
+            // The writer only stops after END, which cannot be queued while we hold the read lock,
+            // or after a failure, which checkFailure() reports
+            while (!queue.offer(values, IDLE_COMMIT_MILLIS, TimeUnit.MILLISECONDS)) {
+                checkFailure();
+            }
+        } finally {
+            closeLock.readLock().unlock();
+        }
+        // The writer may have failed while the row was being queued; it will never be inserted
+        checkFailure();
+    }
+
+    /** Rows committed so far. */
+    public long rowsInserted() {
+        return rowsInserted;
+    }
+
+    /**
+     * Commits everything queued so far, stops the writer thread and rethrows any writer failure.
+     *
+     * <p>Waits for producers already inside {@link #add} to queue their rows, then for the writer,
+     * even if interrupted, since the connection is not usable until it has stopped; the interrupt
+     * status is restored before returning.
+     */
+    @Override
+    public void close() {
+        closeLock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+        boolean interrupted = false;
+        while (writer.isAlive()) {
+            try {
+                if (queue.offer(END, IDLE_COMMIT_MILLIS, TimeUnit.MILLISECONDS)) {
+                    break;
+                }
+                // The writer is still draining a full queue
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        while (true) {
+            try {
+                writer.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        checkFailure();
+    }
+
+    private void checkFailure() {
+        Throwable t = failure;
+        if (t instanceof RuntimeException) {
+            throw (RuntimeException) t;
+        }
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        if (t != null) {
+            throw new IllegalStateException("BulkInserter writer failed", t);
+        }
+    }
+
+    private void drain() {
+        boolean inTransaction = false;
+        try {
+            int txRows = 0;
+            long txBytes = 0;
+            while (true) {
+                Object[] row = inTransaction
+                        ? queue.poll(IDLE_COMMIT_MILLIS, TimeUnit.MILLISECONDS)
+                        : queue.take();
+                if (row == null || row == END
+                        || txRows >= maxRowsPerTransaction || txBytes >= maxBytesPerTransaction) {
+                    if (inTransaction) {
+                        flushBatch();
+                        SQLiteDemo.exec(dbPtr, "COMMIT");
+                        inTransaction = false;
+                        rowsInserted += txRows;
+                        txRows = 0;
+                        txBytes = 0;
+                    }
+                    if (row == END) {
+                        break;
+                    }
+                    if (row == null) {
+                        continue;
+                    }
+                }
+                if (!inTransaction) {
+                    SQLiteDemo.exec(dbPtr, "BEGIN");
+                    inTransaction = true;
+                }
+                int start = batch.position();
+                if (!encode(row)) {
+                    batch.position(start);
+                    flushBatch();
+                    while (!encode(row)) {
+                        batch = ByteBuffer.allocateDirect(batch.capacity() * 2).order(ByteOrder.nativeOrder());
+                    }
+                    start = 0;
+                }
+                batchRows++;
+                txRows++;
+                txBytes += batch.position() - start;
+            }
+        } catch (Throwable t) {
+            // Rows still queued are left in place; add() reports the failure to their producers
+            failure = t;
+            if (inTransaction) {
+                try {
+                    SQLiteDemo.exec(dbPtr, "ROLLBACK");
+                } catch (SQLiteException ignored) {
+                    // The failed statement may already have rolled the transaction back
+                }
+            }
+        } finally {
+            SQLiteDemo.release(stmtPtr);
+        }
+    }
+
+    private void flushBatch() {
+        if (batchRows > 0) {
+            SQLiteDemo.insertBatch(stmtPtr, batch, batch.position(), batchRows);
+        }
+        batch.clear();
+        batchRows = 0;
+    }
+
+    /** Appends one row in the insertBatch wire format; returns false if it does not fit. */
+    private boolean encode(Object[] row) {
+        ByteBuffer b = batch;
+        for (Object v : row) {
+            if (v == null) {
+                if (b.remaining() < 1) return false;
+                b.put((byte) SQLiteDemo.SQLITE_NULL);
+            } else if (v instanceof Double || v instanceof Float) {
+                if (b.remaining() < 9) return false;
+                b.put((byte) SQLiteDemo.SQLITE_FLOAT).putDouble(((Number) v).doubleValue());
+            } else if (v instanceof Number) {
+                if (b.remaining() < 9) return false;
+                b.put((byte) SQLiteDemo.SQLITE_INTEGER).putLong(((Number) v).longValue());
+            } else if (v instanceof Boolean) {
+                if (b.remaining() < 9) return false;
+                b.put((byte) SQLiteDemo.SQLITE_INTEGER).putLong((Boolean) v ? 1 : 0);
+            } else if (v instanceof byte[]) {
+                byte[] bytes = (byte[]) v;
+                if (b.remaining() < 5 + bytes.length) return false;
+                b.put((byte) SQLiteDemo.SQLITE_BLOB).putInt(bytes.length).put(bytes);
+            } else {
+                byte[] bytes = v.toString().getBytes(StandardCharsets.UTF_8);
+                if (b.remaining() < 5 + bytes.length) return false;
+                b.put((byte) SQLiteDemo.SQLITE_TEXT).putInt(bytes.length).put(bytes);
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,274 @@
+package com.example;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Asynchronous write-behind queue for one connection, with group commit.
+ *
+ * <p>Any thread may {@link #submit} a write and gets a future back. One writer thread
+ * opens a transaction when a write arrives, executes everything that arrives until the
+ * group holds {@code maxStatements} writes or {@code maxDelayMicros} have passed since
+ * its first write, then commits once. Callers in the same group share one commit, and
+ * with it one fsync, instead of paying for their own.
+ *
+ * <p>A future completes with the statement's change count only after its group has
+ * committed. A write that fails completes exceptionally without affecting the others,
+ * unless sqlite rolled the whole transaction back, in which case the writes already in
+ * the group fail too. Futures are completed on the writer thread; use the {@code *Async}
+ * stages for anything slow so the next group is not held up.
+ *
+ * <p>The connection belongs to the writer thread until {@link #close()} returns.
+ */
+public final class GroupCommitWriter implements AutoCloseable {
+    public static final int DEFAULT_QUEUE_CAPACITY = 16384;
+    public static final int DEFAULT_MAX_STATEMENTS = 1000;
+    public static final long DEFAULT_MAX_DELAY_MICROS = 1000;
+
+    private static final Write END = new Write(null, null);
+
+    private final long dbPtr;
+    private final int maxStatements;
+    private final long maxDelayNanos;
+    private final BlockingQueue<Write> queue;
+    private final Thread writer;
+    private volatile long groupsCommitted;
+    private volatile long statementsCommitted;
+    private volatile boolean closed;
+    private volatile boolean stopped;
+
+    public GroupCommitWriter(long dbPtr) {
+        this(dbPtr, DEFAULT_QUEUE_CAPACITY, DEFAULT_MAX_STATEMENTS, DEFAULT_MAX_DELAY_MICROS);
+    }
+
+    /**
+     * @param maxStatements writes per transaction
+     * @param maxDelayMicros how long a group stays open for more writes after its first one;
+     *                       0 commits as soon as the queue is empty
+     */
+    public GroupCommitWriter(long dbPtr, int queueCapacity, int maxStatements, long maxDelayMicros) {
+        if (maxStatements < 1) {
+            throw new IllegalArgumentException("maxStatements must be at least 1");
+        }
+        this.dbPtr = dbPtr;
+        this.maxStatements = maxStatements;
+        this.maxDelayNanos = TimeUnit.MICROSECONDS.toNanos(maxDelayMicros);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.writer = new Thread(this::drain, "sqlite-group-commit");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Queues one statement, blocking while the queue is full. Parameters are bound in order
+     * and may be null, integral numbers or Boolean (INTEGER), Float/Double (REAL),
+     * String (TEXT) or byte[] (BLOB). Rows returned by the statement are discarded.
+     *
+     * @return completes with sqlite3_changes() for the statement once its group has committed
+     */
+    public CompletableFuture<Integer> submit(String sql, Object... params) {
+        if (closed) {
+            throw new IllegalStateException("GroupCommitWriter is closed");
+        }
+        Write w = new Write(sql, params);
+        try {
+            queue.put(w);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            w.future.completeExceptionally(e);
+            return w.future;
+        }
+        if (stopped) {
+            // Raced with close(): the writer may have drained the queue before this put
+            failQueued();
+        }
+        return w.future;
+    }
+
+    /** Transactions committed so far. */
+    public long groupsCommitted() {
+        return groupsCommitted;
+    }
+
+    /** Writes committed so far. */
+    public long statementsCommitted() {
+        return statementsCommitted;
+    }
+
+    /**
+     * Commits everything submitted so far and stops the writer thread.
+     *
+     * <p>Waits for the writer even if interrupted, since the connection is not usable until it
+     * has stopped; the interrupt status is restored before returning.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        boolean interrupted = false;
+        while (writer.isAlive()) {
+            try {
+                if (queue.offer(END, 1, TimeUnit.MILLISECONDS)) {
+                    break;
+                }
+                // The writer is still draining a full queue
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        while (true) {
+            try {
+                writer.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void drain() {
+        List<Write> group = new ArrayList<>(Math.min(maxStatements, 4096));
+        try {
+            while (true) {
+                Write w = queue.take();
+                if (w == END) {
+                    break;
+                }
+                long deadline = System.nanoTime() + maxDelayNanos;
+                boolean end = false;
+                while (true) {
+                    execute(w, group);
+                    if (group.size() >= maxStatements) {
+                        break;
+                    }
+                    w = queue.poll();
+                    if (w == null) {
+                        long wait = deadline - System.nanoTime();
+                        if (wait <= 0 || (w = queue.poll(wait, TimeUnit.NANOSECONDS)) == null) {
+                            break;
+                        }
+                    }
+                    if (w == END) {
+                        end = true;
+                        break;
+                    }
+                }
+                commit(group);
+                if (end) {
+                    break;
+                }
+            }
+        } catch (Throwable t) {
+            fail(group, t);
+            if (!SQLiteDemo.isAutocommit(dbPtr)) {
+                SQLiteDemo.exec(dbPtr, "ROLLBACK");
+            }
+        } finally {
+            stopped = true;
+            failQueued();
+        }
+    }
+
+    /** Runs one write inside the group's transaction, opening it if needed. */
+    private void execute(Write w, List<Write> group) {
+        try {
+            if (SQLiteDemo.isAutocommit(dbPtr)) {
+                SQLiteDemo.exec(dbPtr, "BEGIN IMMEDIATE");
+            }
+            long stmtPtr = SQLiteDemo.prepare(dbPtr, w.sql);
+            try {
+                for (int i = 0; i < w.params.length; i++) {
+                    bind(stmtPtr, i + 1, w.params[i]);
+                }
+                while (SQLiteDemo.step(stmtPtr)) {
+                    // Discard rows, e.g. from RETURNING
+                }
+                w.changes = SQLiteDemo.changes(dbPtr);
+            } finally {
+                SQLiteDemo.release(stmtPtr);
+            }
+            group.add(w);
+        } catch (RuntimeException e) {
+            w.future.completeExceptionally(e);
+            if (SQLiteDemo.isAutocommit(dbPtr) && !group.isEmpty()) {
+                fail(group, new SQLiteException("transaction rolled back after a failed write in the same group",
+                        e instanceof SQLiteException ? ((SQLiteException) e).getResultCode() : 1));
+            }
+        }
+    }
+
+    private void commit(List<Write> group) {
+        if (SQLiteDemo.isAutocommit(dbPtr)) {
+            // Nothing succeeded, or sqlite already rolled back and failed the group
+            fail(group, new IllegalStateException("transaction was rolled back"));
+            return;
+        }
+        try {
+            SQLiteDemo.exec(dbPtr, "COMMIT");
+        } catch (SQLiteException e) {
+            if (!SQLiteDemo.isAutocommit(dbPtr)) {
+                SQLiteDemo.exec(dbPtr, "ROLLBACK");
+            }
+            fail(group, e);
+            return;
+        }
+        groupsCommitted++;
+        statementsCommitted += group.size();
+        for (Write w : group) {
+            w.future.complete(w.changes);
+        }
+        group.clear();
+    }
+
+    private static void fail(List<Write> group, Throwable t) {
+        for (Write w : group) {
+            w.future.completeExceptionally(t);
+        }
+        group.clear();
+    }
+
+    private void failQueued() {
+        for (Write w; (w = queue.poll()) != null; ) {
+            if (w != END) {
+                w.future.completeExceptionally(new IllegalStateException("GroupCommitWriter is closed"));
+            }
+        }
+    }
+
+    private static void bind(long stmtPtr, int index, Object v) {
+        if (v == null) {
+            SQLiteDemo.bindNull(stmtPtr, index);
+        } else if (v instanceof Double || v instanceof Float) {
+            SQLiteDemo.bindDouble(stmtPtr, index, ((Number) v).doubleValue());
+        } else if (v instanceof Number) {
+            SQLiteDemo.bindLong(stmtPtr, index, ((Number) v).longValue());
+        } else if (v instanceof Boolean) {
+            SQLiteDemo.bindLong(stmtPtr, index, (Boolean) v ? 1 : 0);
+        } else if (v instanceof byte[]) {
+            SQLiteDemo.bindBlob(stmtPtr, index, (byte[]) v);
+        } else {
+            SQLiteDemo.bindText(stmtPtr, index, v.toString());
+        }
+    }
+
+    private static final class Write {
+        final String sql;
+        final Object[] params;
+        final CompletableFuture<Integer> future = new CompletableFuture<>();
+        int changes;
+
+        Write(String sql, Object[] params) {
+            this.sql = sql;
+            this.params = params;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.example;
+
+/**
+ * Snapshot of a log-linear latency histogram recorded by the native layer.
+ *
+ * <p>Bucket layout matches {@code hist_bucket} in sqlite_jni.c: values below 8 ns get
+ * their own bucket, and above that each power of two is split into 8 linear
+ * sub-buckets, so a reported percentile is within about 12% of the true value.
+ */
+public final class LatencyHistogram {
+    static final int SUB_BITS = 3;
+    static final int SUB_COUNT = 1 << SUB_BITS;
+    public static final int BUCKETS = (64 - SUB_BITS + 1) * SUB_COUNT;
+
+    private final long[] counts;
+    private final long total;
+
+    LatencyHistogram(long[] counts) {
+        this.counts = counts;
+        long sum = 0;
+        for (long c : counts) {
+            sum += c;
+        }
+        this.total = sum;
+    }
+
+    /** Counts recorded since {@code earlier} was taken. */
+    public LatencyHistogram minus(LatencyHistogram earlier) {
+        long[] delta = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            delta[i] = counts[i] - earlier.counts[i];
+        }
+        return new LatencyHistogram(delta);
+    }
+
+    public long count() {
+        return total;
+    }
+
+    /** Upper bound, in nanoseconds, of the bucket holding the given percentile (0-100). */
+    public long percentileNanos(double percentile) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * Math.min(Math.max(percentile, 0), 100) / 100.0);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= Math.max(rank, 1)) {
+                return bucketUpperBound(i);
+            }
+        }
+        return bucketUpperBound(BUCKETS - 1);
+    }
+
+    static long bucketLowerBound(int bucket) {
+        if (bucket < SUB_COUNT) {
+            return bucket;
+        }
+        int msb = bucket / SUB_COUNT + SUB_BITS - 1;
+        long sub = bucket % SUB_COUNT;
+        return (SUB_COUNT + sub) << (msb - SUB_BITS);
+    }
+
+    static long bucketUpperBound(int bucket) {
+        return bucket + 1 < BUCKETS ? bucketLowerBound(bucket + 1) - 1 : Long.MAX_VALUE;
+    }
+}
@@ -0,0 +1,132 @@
+package com.example;
+
+/**
+ * Connection settings applied by {@link SQLiteDemo#openDatabase(String, OpenOptions)}.
+ *
+ * <p>Unset values leave sqlite's compiled-in defaults alone. {@link #auto()} derives a
+ * profile from the OS page size so the same code tunes itself on 4K and 64K kernels.
+ */
+public final class OpenOptions {
+    // sqlite3_open_v2 flags
+    public static final int OPEN_READONLY = 0x00000001;
+    public static final int OPEN_READWRITE = 0x00000002;
+    public static final int OPEN_CREATE = 0x00000004;
+    public static final int OPEN_URI = 0x00000040;
+    public static final int OPEN_NOMUTEX = 0x00008000;
+    public static final int OPEN_FULLMUTEX = 0x00010000;
+
+    // PRAGMA synchronous levels
+    public static final int SYNCHRONOUS_OFF = 0;
+    public static final int SYNCHRONOUS_NORMAL = 1;
+    public static final int SYNCHRONOUS_FULL = 2;
+
+    /** Largest page size sqlite supports. */
+    public static final int MAX_SQLITE_PAGE_SIZE = 65536;
+
+    int flags = OPEN_READWRITE | OPEN_CREATE;
+    int pageSize;
+    long mmapSize = -1;
+    int cacheSizeKib;
+    String journalMode;
+    int synchronous = -1;
+    int walAutocheckpoint = -1;
+    int busyTimeoutMillis = -1;
+
+    /** sqlite defaults: read-write, create if missing, no pragmas. */
+    public static OpenOptions defaults() {
+        return new OpenOptions();
+    }
+
+    /**
+     * Profile derived from the OS page size: sqlite pages match kernel pages, mmap and cache
+     * budgets are fixed in bytes rather than pages, WAL with synchronous=NORMAL, and the WAL
+     * auto-checkpoint is scaled so the log stays around 4 MB whatever the page size.
+     */
+    public static OpenOptions auto() {
+        int osPageSize = SQLiteDemo.getPageSize();
+        int pageSize = Math.min(Math.max(osPageSize, 4096), MAX_SQLITE_PAGE_SIZE);
+        return new OpenOptions()
+                .pageSize(pageSize)
+                .mmapSize(256L * 1024 * 1024)
+                .cacheSizeKib(64 * 1024)
+                .wal()
+                .synchronous(SYNCHRONOUS_NORMAL)
+                .walAutocheckpoint(Math.max(4 * 1024 * 1024 / pageSize, 16))
+                .busyTimeoutMillis(5000);
+    }
+
+    public OpenOptions flags(int flags) {
+        this.flags = flags;
+        return this;
+    }
+
+    /** PRAGMA page_size; a power of two from 512 to 65536. Only takes effect on a new database. */
+    public OpenOptions pageSize(int pageSize) {
+        this.pageSize = pageSize;
+        return this;
+    }
+
+    /** PRAGMA mmap_size in bytes; 0 disables memory-mapped I/O. */
+    public OpenOptions mmapSize(long mmapSize) {
+        this.mmapSize = mmapSize;
+        return this;
+    }
+
+    /** Page cache budget in KiB (PRAGMA cache_size = -kib), independent of the page size. */
+    public OpenOptions cacheSizeKib(int cacheSizeKib) {
+        this.cacheSizeKib = cacheSizeKib;
+        return this;
+    }
+
+    /** PRAGMA journal_mode, e.g. "WAL", "DELETE" or "MEMORY". */
+    public OpenOptions journalMode(String journalMode) {
+        this.journalMode = journalMode;
+        return this;
+    }
+
+    public OpenOptions wal() {
+        return journalMode("WAL");
+    }
+
+    /** PRAGMA synchronous, one of the SYNCHRONOUS_* levels. */
+    public OpenOptions synchronous(int synchronous) {
+        this.synchronous = synchronous;
+        return this;
+    }
+
+    /** PRAGMA wal_autocheckpoint in pages. */
+    public OpenOptions walAutocheckpoint(int pages) {
+        this.walAutocheckpoint = pages;
+        return this;
+    }
+
+    public OpenOptions busyTimeoutMillis(int millis) {
+        this.busyTimeoutMillis = millis;
+        return this;
+    }
+
+    OpenOptions copy() {
+        OpenOptions o = new OpenOptions();
+        o.flags = flags;
+        o.pageSize = pageSize;
+        o.mmapSize = mmapSize;
+        o.cacheSizeKib = cacheSizeKib;
+        o.journalMode = journalMode;
+        o.synchronous = synchronous;
+        o.walAutocheckpoint = walAutocheckpoint;
+        o.busyTimeoutMillis = busyTimeoutMillis;
+        return o;
+    }
+
+    @Override
+    public String toString() {
+        return "OpenOptions{flags=0x" + Integer.toHexString(flags)
+                + ", pageSize=" + pageSize
+                + ", mmapSize=" + mmapSize
+                + ", cacheSizeKib=" + cacheSizeKib
+                + ", journalMode=" + journalMode
+                + ", synchronous=" + synchronous
+                + ", walAutocheckpoint=" + walAutocheckpoint
+                + ", busyTimeoutMillis=" + busyTimeoutMillis + "}";
+    }
+}
@@ -0,0 +1,179 @@
+package com.example;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * Streams one BLOB value through sqlite's incremental I/O (sqlite3_blob_*) without
+ * materializing it as a {@code byte[]}.
+ *
+ * <p>Direct buffers are filled or drained by sqlite in a single native call. Heap
+ * buffers go through a direct bounce buffer one OS page at a time, so heap use stays
+ * constant whatever the blob size.
+ *
+ * <p>A BLOB's length is fixed once written; to store a new payload, insert it with
+ * {@link SQLiteDemo#bindZeroBlob} and then write into it through this channel.
+ * Like every handle from a connection, a channel must not be used by two threads at once.
+ */
+public final class SQLiteBlobChannel implements SeekableByteChannel {
+    private final long blobPtr;
+    private final boolean writable;
+    private final int size;
+    private ByteBuffer bounce;
+    private int position;
+    private boolean open = true;
+
+    private SQLiteBlobChannel(long blobPtr, boolean writable) {
+        this.blobPtr = blobPtr;
+        this.writable = writable;
+        this.size = SQLiteDemo.blobBytes(blobPtr);
+    }
+
+    /** Opens {@code table.column} of the row with the given rowid in the "main" database. */
+    public static SQLiteBlobChannel open(long dbPtr, String table, String column, long rowid, boolean writable) {
+        return open(dbPtr, "main", table, column, rowid, writable);
+    }
+
+    public static SQLiteBlobChannel open(long dbPtr, String dbName, String table, String column,
+                                         long rowid, boolean writable) {
+        return new SQLiteBlobChannel(SQLiteDemo.blobOpen(dbPtr, dbName, table, column, rowid, writable), writable);
+    }
+
+    public static InputStream newInputStream(long dbPtr, String table, String column, long rowid) {
+        return Channels.newInputStream(open(dbPtr, table, column, rowid, false));
+    }
+
+    /** Writes into an existing BLOB (typically a zeroblob) from offset 0. */
+    public static OutputStream newOutputStream(long dbPtr, String table, String column, long rowid) {
+        return Channels.newOutputStream(open(dbPtr, table, column, rowid, true));
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws ClosedChannelException {
+        checkOpen();
+        if (position >= size) {
+            return dst.hasRemaining() ? -1 : 0;
+        }
+        int length = Math.min(dst.remaining(), size - position);
+        if (dst.isDirect()) {
+            SQLiteDemo.blobRead(blobPtr, dst, dst.position(), length, position);
+            dst.position(dst.position() + length);
+        } else {
+            ByteBuffer chunk = bounce();
+            for (int done = 0; done < length; ) {
+                int n = Math.min(chunk.capacity(), length - done);
+                SQLiteDemo.blobRead(blobPtr, chunk, 0, n, position + done);
+                dst.put(chunk.clear().limit(n));
+                done += n;
+            }
+        }
+        position += length;
+        return length;
+    }
+
+    /**
+     * Writes within the existing BLOB.
+     *
+     * @throws IOException if the write would go past the end of the BLOB, which cannot grow;
+     *         nothing is written then
+     */
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        checkOpen();
+        if (!writable) {
+            throw new NonWritableChannelException();
+        }
+        int length = src.remaining();
+        if (length > size - position) {
+            throw new IOException("write of " + length + " bytes at " + position
+                    + " exceeds BLOB size " + size);
+        }
+        if (src.isDirect()) {
+            SQLiteDemo.blobWrite(blobPtr, src, src.position(), length, position);
+            src.position(src.position() + length);
+        } else {
+            ByteBuffer chunk = bounce();
+            for (int done = 0; done < length; ) {
+                int n = Math.min(chunk.capacity(), length - done);
+                chunk.clear();
+                chunk.put(src.slice(src.position(), n));
+                src.position(src.position() + n);
+                SQLiteDemo.blobWrite(blobPtr, chunk, 0, n, position + done);
+                done += n;
+            }
+        }
+        position += length;
+        return length;
+    }
+
+    @Override
+    public long position() {
+        return position;
+    }
+
+    @Override
+    public SQLiteBlobChannel position(long newPosition) {
+        if (newPosition < 0) {
+            throw new IllegalArgumentException("negative position");
+        }
+        position = (int) Math.min(newPosition, size);
+        return this;
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    /**
+     * BLOBs have a fixed length; only truncating to at least the current size is a no-op.
+     *
+     * @throws IOException if {@code newSize} is smaller than the BLOB
+     */
+    @Override
+    public SQLiteBlobChannel truncate(long newSize) throws IOException {
+        checkOpen();
+        if (!writable) {
+            throw new NonWritableChannelException();
+        }
+        if (newSize < 0) {
+            throw new IllegalArgumentException("negative size");
+        }
+        if (newSize < size) {
+            throw new IOException("sqlite BLOBs cannot be truncated in place: size " + size + ", requested " + newSize);
+        }
+        return this;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() {
+        if (open) {
+            open = false;
+            SQLiteDemo.blobClose(blobPtr);
+        }
+    }
+
+    private ByteBuffer bounce() {
+        if (bounce == null) {
+            bounce = ByteBuffer.allocateDirect(SQLiteDemo.getPageSize());
+        }
+        return bounce;
+    }
+
+    private void checkOpen() throws ClosedChannelException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+    }
+}
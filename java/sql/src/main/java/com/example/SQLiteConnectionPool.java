@@ -0,0 +1,194 @@
+package com.example;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongFunction;
+
+/**
+ * One writer connection plus N reader connections on the same WAL-mode database file.
+ *
+ * <p>Readers are opened read-only with {@code SQLITE_OPEN_NOMUTEX}, so sqlite does no
+ * locking of its own; the pool guarantees each reader is used by one thread at a time.
+ * Borrowing claims a free slot with a CAS, starting from the slot the thread used last so
+ * threads tend to reuse the same connection and its warm statement cache. A non-fair
+ * {@link Semaphore} counts the free readers: while one is free, taking and returning a permit
+ * is a single CAS on that count and never touches its wait queue, so borrow and return are
+ * lock-free. Only when all N readers are out does a borrower park, instead of spinning on the
+ * slots or pinning a carrier with {@code synchronized}, which keeps it friendly to virtual threads.
+ *
+ * <p>{@link #withReader} runs inside a read transaction, so everything the callback
+ * reads comes from one WAL snapshot even while the writer commits.
+ */
+public final class SQLiteConnectionPool implements AutoCloseable {
+    private final SqliteConnection writer;
+    private final ReentrantLock writerLock = new ReentrantLock();
+    private final SqliteConnection[] readers;
+    private final AtomicIntegerArray inUse;
+    private final Semaphore available;
+    // Slot each thread borrowed last, -1 before its first borrow
+    private final ThreadLocal<int[]> slotHint = ThreadLocal.withInitial(() -> new int[] {-1});
+    private volatile boolean closed;
+
+    /**
+     * @param path database file; {@code :memory:} cannot be shared between connections
+     * @param readerCount number of reader connections, e.g. the number of cores
+     * @param options tuning for all connections; WAL is always enabled on the writer
+     */
+    public SQLiteConnectionPool(String path, int readerCount, OpenOptions options) {
+        if (readerCount < 1) {
+            throw new IllegalArgumentException("readerCount must be at least 1");
+        }
+        OpenOptions writerOptions = options.copy()
+                .flags(options.flags | OpenOptions.OPEN_NOMUTEX)
+                .wal();
+        OpenOptions readerOptions = options.copy()
+                .flags(OpenOptions.OPEN_READONLY | OpenOptions.OPEN_NOMUTEX | (options.flags & OpenOptions.OPEN_URI))
+                .pageSize(0)
+                .journalMode(null)
+                .synchronous(-1)
+                .walAutocheckpoint(-1);
+        this.writer = SqliteConnection.open(path, writerOptions);
+        this.readers = new SqliteConnection[readerCount];
+        try {
+            for (int i = 0; i < readerCount; i++) {
+                readers[i] = SqliteConnection.open(path, readerOptions);
+            }
+        } catch (RuntimeException e) {
+            closeAll();
+            throw e;
+        }
+        this.inUse = new AtomicIntegerArray(readerCount);
+        this.available = new Semaphore(readerCount, false);
+    }
+
+    public int readerCount() {
+        return readers.length;
+    }
+
+    /** Runs {@code fn} with a reader connection inside a read transaction (one WAL snapshot). */
+    public <T> T withReader(LongFunction<T> fn) throws InterruptedException {
+        int slot = borrow();
+        long db = readers[slot].handle();
+        try {
+            SQLiteDemo.exec(db, "BEGIN");
+            T result;
+            try {
+                result = fn.apply(db);
+            } catch (RuntimeException | Error e) {
+                endTransaction(db, e);
+                throw e;
+            }
+            SQLiteDemo.exec(db, "COMMIT");
+            return result;
+        } finally {
+            readers[slot].cacheMemoryUsed();
+            giveBack(slot);
+        }
+    }
+
+    /**
+     * Runs {@code fn} with the writer connection inside BEGIN IMMEDIATE; commits on return
+     * and rolls back if it throws.
+     */
+    public <T> T withWriter(LongFunction<T> fn) throws InterruptedException {
+        writerLock.lockInterruptibly();
+        try {
+            checkOpen();
+            long db = writer.handle();
+            SQLiteDemo.exec(db, "BEGIN IMMEDIATE");
+            T result;
+            try {
+                result = fn.apply(db);
+            } catch (RuntimeException | Error e) {
+                endTransaction(db, e);
+                throw e;
+            }
+            SQLiteDemo.exec(db, "COMMIT");
+            return result;
+        } finally {
+            if (!writer.isClosed()) {
+                writer.cacheMemoryUsed();
+            }
+            writerLock.unlock();
+        }
+    }
+
+    /**
+     * Waits for all borrowed readers to come back, then closes every connection. The wait
+     * ignores interrupts: closing a connection another thread is still using would crash.
+     * Threads waiting for a reader wake up and get an {@link IllegalStateException}.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        available.acquireUninterruptibly(readers.length);
+        writerLock.lock();
+        try {
+            closeAll();
+        } finally {
+            writerLock.unlock();
+            // Wakes threads parked in borrow(); they see closed and give the permit back
+            available.release(readers.length);
+        }
+    }
+
+    private int borrow() throws InterruptedException {
+        checkOpen();
+        available.acquire();
+        if (closed) {
+            available.release();
+            checkOpen();
+        }
+        int n = readers.length;
+        int[] hint = slotHint.get();
+        int start = hint[0] >= 0 ? hint[0] : ThreadLocalRandom.current().nextInt(n);
+        while (true) {
+            for (int i = 0; i < n; i++) {
+                int slot = (start + i) % n;
+                if (inUse.get(slot) == 0 && inUse.compareAndSet(slot, 0, 1)) {
+                    hint[0] = slot;
+                    return slot;
+                }
+            }
+            // A permit guarantees a free slot; another borrower only raced us to it
+            Thread.onSpinWait();
+        }
+    }
+
+    private void giveBack(int slot) {
+        inUse.set(slot, 0);
+        available.release();
+    }
+
+    /**
+     * Rolls back after {@code fn} threw; a failure to do so is attached to the caller's exception
+     * instead of replacing it.
+     */
+    private static void endTransaction(long db, Throwable failure) {
+        try {
+            SQLiteDemo.exec(db, "ROLLBACK");
+        } catch (RuntimeException e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("SQLiteConnectionPool is closed");
+        }
+    }
+
+    private void closeAll() {
+        for (SqliteConnection reader : readers) {
+            if (reader != null) {
+                reader.close();
+            }
+        }
+        writer.close();
+    }
+}
@@ -0,0 +1,167 @@
+package com.example;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Forward-only cursor over a prepared statement that reads rows in batches.
+ *
+ * <p>Each {@link #next()} that runs past the current batch makes a single
+ * {@link SQLiteDemo#fetchRows} call, which steps the statement natively and
+ * packs as many rows as fit into a direct buffer. Column accessors read
+ * straight from that buffer: integers and doubles are fixed 8-byte slots,
+ * TEXT (UTF-8) and BLOB values are offset/length pairs into the tail of the
+ * buffer. Only {@link #getString} allocates.
+ *
+ * <p>The cursor owns the statement and releases it on {@link #close()}.
+ */
+public final class SQLiteCursor implements AutoCloseable {
+    /** Default batch buffer size; a multiple of both 4K and 64K pages. */
+    public static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+
+    private static final int HEADER_SIZE = 16;
+    private static final int FLAG_DONE = 1;
+
+    private final long stmtPtr;
+    private final ByteBuffer buffer;
+    private final int maxRows;
+    private int rowCount;
+    private int columnCount;
+    private int rowStride;
+    private int typeBytes;
+    private int row = -1;
+    private int rowPos;
+    private boolean done;
+    private boolean closed;
+
+    public SQLiteCursor(long stmtPtr) {
+        this(stmtPtr, ByteBuffer.allocateDirect(DEFAULT_BUFFER_SIZE), Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param stmtPtr statement from {@link SQLiteDemo#prepare}, with parameters already bound
+     * @param buffer direct buffer reused for every batch
+     * @param maxRows upper bound on rows fetched per native call
+     */
+    public SQLiteCursor(long stmtPtr, ByteBuffer buffer, int maxRows) {
+        if (!buffer.isDirect()) {
+            throw new IllegalArgumentException("SQLiteCursor requires a direct ByteBuffer");
+        }
+        this.stmtPtr = stmtPtr;
+        this.buffer = buffer.order(ByteOrder.nativeOrder());
+        this.maxRows = maxRows;
+    }
+
+    /** Advances to the next row, fetching another batch from sqlite when the current one is used up. */
+    public boolean next() {
+        if (row + 1 < rowCount) {
+            row++;
+            rowPos += rowStride;
+            return true;
+        }
+        if (done || closed) {
+            return false;
+        }
+        rowCount = SQLiteDemo.fetchRows(stmtPtr, buffer, maxRows);
+        done = (buffer.getInt(4) & FLAG_DONE) != 0;
+        columnCount = buffer.getInt(8);
+        rowStride = buffer.getInt(12);
+        typeBytes = (columnCount + 7) & ~7;
+        if (rowCount == 0) {
+            return false;
+        }
+        row = 0;
+        rowPos = HEADER_SIZE;
+        return true;
+    }
+
+    public int columnCount() {
+        return columnCount;
+    }
+
+    /** The sqlite3 type code of the column in the current row, e.g. {@link SQLiteDemo#SQLITE_INTEGER}. */
+    public int type(int column) {
+        return buffer.get(rowPos + column);
+    }
+
+    public boolean isNull(int column) {
+        return type(column) == SQLiteDemo.SQLITE_NULL;
+    }
+
+    public long getLong(int column) {
+        int slot = slot(column);
+        return type(column) == SQLiteDemo.SQLITE_FLOAT ? (long) buffer.getDouble(slot) : buffer.getLong(slot);
+    }
+
+    public double getDouble(int column) {
+        int slot = slot(column);
+        return type(column) == SQLiteDemo.SQLITE_INTEGER ? buffer.getLong(slot) : buffer.getDouble(slot);
+    }
+
+    /** Byte length of a TEXT or BLOB value, 0 for other types. */
+    public int getLength(int column) {
+        return isVariable(column) ? buffer.getInt(slot(column) + 4) : 0;
+    }
+
+    /**
+     * Copies a TEXT (UTF-8) or BLOB value into {@code dst} and returns the number of bytes copied.
+     */
+    public int getBytes(int column, byte[] dst, int offset) {
+        if (!isVariable(column)) {
+            return 0;
+        }
+        int slot = slot(column);
+        int length = Math.min(buffer.getInt(slot + 4), dst.length - offset);
+        buffer.get(buffer.getInt(slot), dst, offset, length);
+        return length;
+    }
+
+    /**
+     * Read-only view of a TEXT or BLOB value. The view is only valid until the next batch is fetched.
+     */
+    public ByteBuffer getBuffer(int column) {
+        if (!isVariable(column)) {
+            return null;
+        }
+        int slot = slot(column);
+        return buffer.slice(buffer.getInt(slot), buffer.getInt(slot + 4)).asReadOnlyBuffer();
+    }
+
+    /** Decodes a TEXT value; the only accessor that allocates. */
+    public String getString(int column) {
+        int type = type(column);
+        if (type == SQLiteDemo.SQLITE_NULL) {
+            return null;
+        }
+        if (type == SQLiteDemo.SQLITE_INTEGER) {
+            return Long.toString(getLong(column));
+        }
+        if (type == SQLiteDemo.SQLITE_FLOAT) {
+            return Double.toString(getDouble(column));
+        }
+        byte[] bytes = new byte[getLength(column)];
+        getBytes(column, bytes, 0);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            SQLiteDemo.release(stmtPtr);
+        }
+    }
+
+    private boolean isVariable(int column) {
+        int type = type(column);
+        return type == SQLiteDemo.SQLITE_TEXT || type == SQLiteDemo.SQLITE_BLOB;
+    }
+
+    private int slot(int column) {
+        if (row < 0 || row >= rowCount) {
+            throw new IllegalStateException("cursor is not positioned on a row");
+        }
+        return rowPos + typeBytes + column * 8;
+    }
+}
@@ -1,36 +1,174 @@
 package com.example;
 
+import java.nio.ByteBuffer;
+
 public class SQLiteDemo {
+    // sqlite3 column type codes returned by columnType
+    public static final int SQLITE_INTEGER = 1;
+    public static final int SQLITE_FLOAT = 2;
+    public static final int SQLITE_TEXT = 3;
+    public static final int SQLITE_BLOB = 4;
+    public static final int SQLITE_NULL = 5;
+
+    // sqlite3_db_status counters read by dbStatus
+    public static final int SQLITE_DBSTATUS_LOOKASIDE_USED = 0;
+    public static final int SQLITE_DBSTATUS_CACHE_USED = 1;
+    public static final int SQLITE_DBSTATUS_SCHEMA_USED = 2;
+    public static final int SQLITE_DBSTATUS_STMT_USED = 3;
+
+    // sqlite3_status64 counters read by status64
+    public static final int SQLITE_STATUS_MEMORY_USED = 0;
+    public static final int SQLITE_STATUS_PAGECACHE_USED = 1;
+    public static final int SQLITE_STATUS_PAGECACHE_OVERFLOW = 2;
+    public static final int SQLITE_STATUS_MALLOC_SIZE = 5;
+    public static final int SQLITE_STATUS_MALLOC_COUNT = 9;
+
     // Native method declarations
     public static native long openDatabase(String dbPath);
     public static native void closeDatabase(long dbPtr);
     public static native String getVersion();
-    
+
+    // Opens with sqlite3_open_v2 and applies tuning pragmas; prefer openDatabase(String, OpenOptions)
+    public static native long openDatabaseWithOptions(String dbPath, int flags, int pageSize, long mmapSize,
+            int cacheSizeKib, String journalMode, int synchronous, int walAutocheckpoint, int busyTimeoutMillis);
+
+    // OS page size as reported by sysconf(_SC_PAGESIZE), i.e. getconf PAGESIZE
+    public static native int getPageSize();
+
+    // Executes one or more SQL statements that return no rows (DDL, BEGIN/COMMIT, pragmas)
+    public static native void exec(long dbPtr, String sql);
+
+    // Prepared statements. prepare() returns a statement from the connection's LRU cache
+    // (keyed by SQL text) or prepares and caches a new one; release() hands it back.
+    // Statement handles are only valid on the connection that prepared them.
+    public static native long prepare(long dbPtr, String sql);
+    public static native void release(long stmtPtr);
+    public static native void reset(long stmtPtr);
+    public static native boolean step(long stmtPtr);
+
+    // Parameter indexes start at 1, as in sqlite3_bind_*
+    public static native int bindParameterCount(long stmtPtr);
+    public static native void bindLong(long stmtPtr, int index, long value);
+    public static native void bindDouble(long stmtPtr, int index, double value);
+    public static native void bindText(long stmtPtr, int index, String value);
+    public static native void bindBlob(long stmtPtr, int index, byte[] value);
+    public static native void bindNull(long stmtPtr, int index);
+    // Binds a zero-filled BLOB of the given length, to be filled later through SQLiteBlobChannel
+    public static native void bindZeroBlob(long stmtPtr, int index, int length);
+
+    // Column indexes start at 0, as in sqlite3_column_*
+    public static native int columnCount(long stmtPtr);
+    public static native int columnType(long stmtPtr, int column);
+    public static native long columnLong(long stmtPtr, int column);
+    public static native double columnDouble(long stmtPtr, int column);
+    public static native String columnText(long stmtPtr, int column);
+    public static native byte[] columnBlob(long stmtPtr, int column);
+
+    // Steps the statement and packs up to maxRows rows into a direct ByteBuffer; see SQLiteCursor
+    public static native int fetchRows(long stmtPtr, ByteBuffer buffer, int maxRows);
+
+    // Binds and steps the statement once per row encoded in the buffer; see BulkInserter
+    public static native int insertBatch(long stmtPtr, ByteBuffer buffer, int length, int rowCount);
+
+    // Incremental BLOB I/O (sqlite3_blob_*); buffers must be direct. See SQLiteBlobChannel
+    public static native long blobOpen(long dbPtr, String dbName, String table, String column, long rowid, boolean writable);
+    public static native int blobBytes(long blobPtr);
+    public static native void blobRead(long blobPtr, ByteBuffer buffer, int bufferOffset, int length, int blobOffset);
+    public static native void blobWrite(long blobPtr, ByteBuffer buffer, int bufferOffset, int length, int blobOffset);
+    public static native void blobReopen(long blobPtr, long rowid);
+    public static native void blobClose(long blobPtr);
+
+    public static native int changes(long dbPtr);
+    public static native long lastInsertRowid(long dbPtr);
+    // False while a transaction is open; sqlite may roll one back by itself after some errors
+    public static native boolean isAutocommit(long dbPtr);
+    public static native int cachedStatementCount(long dbPtr);
+    // Current value of a sqlite3_db_status counter, e.g. SQLITE_DBSTATUS_CACHE_USED (bytes)
+    public static native int dbStatus(long dbPtr, int op);
+    // Writes the current value and high-water mark of a global sqlite3_status64 counter into out[0..1]
+    public static native void status64(int op, boolean resetHighwater, long[] out);
+
+    // Per-SQL step timing, recorded natively while enabled; see SQLiteMetrics
+    public static native void setMetricsEnabled(boolean enabled);
+    public static native int statementStatsCount();
+    public static native String statementStatsSql(int index);
+    public static native int statementStats(int index, long[] out);
+
     static {
         // Load our custom SQLite JNI library
         System.load("/usr/local/lib/libsqlite_jni.so");
     }
 
+    /**
+     * Opens a database and applies the given options. Unlike {@link #openDatabase(String)},
+     * failures are thrown as {@link SQLiteException} rather than returned as 0.
+     */
+    public static long openDatabase(String dbPath, OpenOptions options) {
+        return openDatabaseWithOptions(dbPath, options.flags, options.pageSize, options.mmapSize,
+                options.cacheSizeKib, options.journalMode, options.synchronous,
+                options.walAutocheckpoint, options.busyTimeoutMillis);
+    }
+
+    /** Reads a single-valued pragma such as "page_size" or "journal_mode". */
+    public static String pragma(long dbPtr, String name) {
+        long stmt = prepare(dbPtr, "PRAGMA " + name);
+        try {
+            return step(stmt) ? columnText(stmt, 0) : null;
+        } finally {
+            release(stmt);
+        }
+    }
+
     public static void main(String[] args) {
         try {
             System.out.println("SQLite Demo Starting...");
-            
+
             // Get SQLite version and open database (this will trigger our custom printf)
             System.out.println("SQLite version: " + getVersion());
+            System.out.println("OS page size: " + getPageSize());
+            System.out.println("Auto profile: " + OpenOptions.auto());
             System.out.println("Opening database...");
             long dbPtr = openDatabase(":memory:");
-            
+
             if (dbPtr != 0) {
                 System.out.println("SQLite database opened successfully!");
                 System.out.println("Database pointer: " + dbPtr);
-                
+
+                // Run the same statements repeatedly; only the first prepare of each parses SQL
+                exec(dbPtr, "CREATE TABLE kv (k INTEGER PRIMARY KEY, v TEXT)");
+                exec(dbPtr, "BEGIN");
+                for (int i = 0; i < 1000; i++) {
+                    long insert = prepare(dbPtr, "INSERT INTO kv (k, v) VALUES (?, ?)");
+                    bindLong(insert, 1, i);
+                    bindText(insert, 2, "value-" + i);
+                    step(insert);
+                    release(insert);
+                }
+                exec(dbPtr, "COMMIT");
+
+                long query = prepare(dbPtr, "SELECT v FROM kv WHERE k = ?");
+                bindLong(query, 1, 42);
+                if (step(query)) {
+                    System.out.println("Row 42: " + columnText(query, 0));
+                }
+                release(query);
+                // Scan through a batched cursor: one native call per buffer of rows
+                long total = 0;
+                try (SQLiteCursor cursor = new SQLiteCursor(prepare(dbPtr, "SELECT k, v FROM kv"))) {
+                    while (cursor.next()) {
+                        total += cursor.getLong(0) + cursor.getLength(1);
+                    }
+                }
+                System.out.println("Cursor checksum: " + total);
+                System.out.println("Cached statements: " + cachedStatementCount(dbPtr));
+
                 // Clean up
                 closeDatabase(dbPtr);
                 System.out.println("SQLite demo completed successfully!");
             } else {
                 System.out.println("Failed to open SQLite database");
             }
-            
+
         } catch (Exception e) {
             System.err.println("Error: " + e.getMessage());
             e.printStackTrace();
@@ -0,0 +1,20 @@
+package com.example;
+
+/**
+ * Thrown by the native layer when sqlite3 reports an error.
+ */
+public class SQLiteException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final int resultCode;
+
+    public SQLiteException(String message, int resultCode) {
+        super(message + " (sqlite result code " + resultCode + ")");
+        this.resultCode = resultCode;
+    }
+
+    /** The primary sqlite3 result code, e.g. 1 for SQLITE_ERROR or 5 for SQLITE_BUSY. */
+    public int getResultCode() {
+        return resultCode;
+    }
+}
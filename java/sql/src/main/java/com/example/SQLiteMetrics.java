@@ -0,0 +1,256 @@
+package com.example;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import javax.management.ObjectName;
+
+/**
+ * Statement latency and sqlite memory metrics.
+ *
+ * <p>{@link #enable()} turns on native per-SQL timing: every step is timed with
+ * CLOCK_MONOTONIC and folded into lock-free counters and a log-linear histogram keyed
+ * by SQL text (see {@link StatementStats}). {@link #startPolling} additionally samples
+ * sqlite3_status64 on a schedule, publishes the latest values through the
+ * {@code com.example:type=SQLiteMetrics} MBean and emits JFR events with per-interval
+ * statement latencies, so slow queries show up in a recording next to GC and page faults.
+ */
+public final class SQLiteMetrics implements SQLiteMetricsMBean {
+    public static final String OBJECT_NAME = "com.example:type=SQLiteMetrics";
+
+    private static final System.Logger LOG = System.getLogger(SQLiteMetrics.class.getName());
+    private static final SQLiteMetrics INSTANCE = new SQLiteMetrics();
+
+    private final long[] statusScratch = new long[2];
+    private final long[] statsScratch = new long[StatementStats.FIXED_FIELDS + LatencyHistogram.BUCKETS];
+    private ScheduledExecutorService scheduler;
+    private ScheduledFuture<?> poller;
+    private volatile long memoryUsed;
+    private volatile long memoryHighwater;
+    private volatile long pageCacheOverflow;
+    private volatile long mallocCount;
+    private volatile long largestMalloc;
+    private volatile List<StatementStats> statements = List.of();
+
+    private SQLiteMetrics() {
+    }
+
+    public static SQLiteMetrics get() {
+        return INSTANCE;
+    }
+
+    /** Starts recording per-statement timings; costs two clock reads per step. */
+    public static void enable() {
+        SQLiteDemo.setMetricsEnabled(true);
+    }
+
+    public static void disable() {
+        SQLiteDemo.setMetricsEnabled(false);
+    }
+
+    /** Cumulative statistics for every SQL text seen since metrics were first enabled. */
+    public static List<StatementStats> statementStats() {
+        synchronized (INSTANCE) {
+            int count = SQLiteDemo.statementStatsCount();
+            List<StatementStats> result = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                result.add(StatementStats.read(i, INSTANCE.statsScratch));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Enables metrics, registers the MBean and polls every {@code periodMillis}.
+     * Calling it again changes the period.
+     */
+    public synchronized void startPolling(long periodMillis) throws Exception {
+        enable();
+        ObjectName name = new ObjectName(OBJECT_NAME);
+        if (!ManagementFactory.getPlatformMBeanServer().isRegistered(name)) {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+        }
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "sqlite-metrics");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        if (poller != null) {
+            poller.cancel(false);
+        }
+        poller = scheduler.scheduleAtFixedRate(this::pollAndLog, 0, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // An exception escaping a fixed-rate task cancels every later run, so log it and carry on
+    private void pollAndLog() {
+        try {
+            poll();
+        } catch (RuntimeException e) {
+            LOG.log(System.Logger.Level.WARNING, "SQLite metrics poll failed", e);
+        }
+    }
+
+    public synchronized void stopPolling() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+            poller = null;
+        }
+    }
+
+    /** Samples sqlite3_status64 and the statement table once and emits JFR events. */
+    public synchronized void poll() {
+        memoryUsed = status(SQLiteDemo.SQLITE_STATUS_MEMORY_USED);
+        memoryHighwater = statusScratch[1];
+        pageCacheOverflow = status(SQLiteDemo.SQLITE_STATUS_PAGECACHE_OVERFLOW);
+        mallocCount = status(SQLiteDemo.SQLITE_STATUS_MALLOC_COUNT);
+        status(SQLiteDemo.SQLITE_STATUS_MALLOC_SIZE);
+        largestMalloc = statusScratch[1];
+
+        StatusEvent status = new StatusEvent();
+        if (status.isEnabled()) {
+            status.memoryUsed = memoryUsed;
+            status.memoryHighwater = memoryHighwater;
+            status.pageCacheOverflow = pageCacheOverflow;
+            status.mallocCount = mallocCount;
+            status.liveConnections = SqliteConnection.liveConnections();
+            status.commit();
+        }
+
+        List<StatementStats> previous = statements;
+        List<StatementStats> current = statementStats();
+        for (int i = 0; i < current.size(); i++) {
+            StatementStats interval = i < previous.size() ? current.get(i).minus(previous.get(i)) : current.get(i);
+            if (interval.executions() == 0) {
+                continue;
+            }
+            StatementEvent event = new StatementEvent();
+            if (event.isEnabled()) {
+                event.sql = interval.sql();
+                event.executions = interval.executions();
+                event.rows = interval.rows();
+                event.p50 = interval.percentileNanos(50);
+                event.p99 = interval.percentileNanos(99);
+                event.max = interval.maxNanos();
+                event.commit();
+            }
+        }
+        statements = current;
+    }
+
+    private long status(int op) {
+        SQLiteDemo.status64(op, false, statusScratch);
+        return statusScratch[0];
+    }
+
+    @Override
+    public long getMemoryUsed() {
+        return memoryUsed;
+    }
+
+    @Override
+    public long getMemoryHighwater() {
+        return memoryHighwater;
+    }
+
+    @Override
+    public long getPageCacheOverflow() {
+        return pageCacheOverflow;
+    }
+
+    @Override
+    public long getMallocCount() {
+        return mallocCount;
+    }
+
+    @Override
+    public long getLargestMalloc() {
+        return largestMalloc;
+    }
+
+    @Override
+    public int getLiveConnections() {
+        return SqliteConnection.liveConnections();
+    }
+
+    @Override
+    public long getLiveCacheMemory() {
+        return SqliteConnection.liveCacheMemory();
+    }
+
+    @Override
+    public int getStatementCount() {
+        return statements.size();
+    }
+
+    @Override
+    public String[] getStatements() {
+        return statements.stream()
+                .sorted(Comparator.comparingLong((StatementStats s) -> s.percentileNanos(99)).reversed())
+                .map(StatementStats::toString)
+                .toArray(String[]::new);
+    }
+
+    @Name("com.example.SQLiteStatus")
+    @Label("SQLite Status")
+    @Category("SQLite")
+    static final class StatusEvent extends Event {
+        @Label("Memory Used")
+        @DataAmount
+        long memoryUsed;
+
+        @Label("Memory High-water")
+        @DataAmount
+        long memoryHighwater;
+
+        @Label("Page Cache Overflow")
+        @DataAmount
+        long pageCacheOverflow;
+
+        @Label("Outstanding Allocations")
+        long mallocCount;
+
+        @Label("Live Connections")
+        int liveConnections;
+    }
+
+    @Name("com.example.SQLiteStatement")
+    @Label("SQLite Statement Latency")
+    @Category("SQLite")
+    static final class StatementEvent extends Event {
+        @Label("SQL")
+        String sql;
+
+        @Label("Executions")
+        long executions;
+
+        @Label("Rows")
+        long rows;
+
+        @Label("p50")
+        @Timespan(Timespan.NANOSECONDS)
+        long p50;
+
+        @Label("p99")
+        @Timespan(Timespan.NANOSECONDS)
+        long p99;
+
+        @Label("Max Since Start")
+        @Timespan(Timespan.NANOSECONDS)
+        long max;
+    }
+}
@@ -0,0 +1,23 @@
+package com.example;
+
+/** JMX view of {@link SQLiteMetrics}, registered as {@code com.example:type=SQLiteMetrics}. */
+public interface SQLiteMetricsMBean {
+    long getMemoryUsed();
+
+    long getMemoryHighwater();
+
+    long getPageCacheOverflow();
+
+    long getMallocCount();
+
+    long getLargestMalloc();
+
+    int getLiveConnections();
+
+    long getLiveCacheMemory();
+
+    int getStatementCount();
+
+    /** One summary line per SQL text, slowest p99 first. */
+    String[] getStatements();
+}
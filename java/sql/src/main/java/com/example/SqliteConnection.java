@@ -0,0 +1,153 @@
+package com.example;
+
+import java.lang.ref.Cleaner;
+import java.lang.ref.Reference;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Owns one native connection from {@link SQLiteDemo} and closes it exactly once.
+ *
+ * <p>Connections that become unreachable without {@link #close()} are closed by a
+ * {@link Cleaner}, so a forgotten close no longer leaks the sqlite3 connection and its
+ * page cache outside the heap. With leak tracking on ({@link #setLeakTracking} or
+ * {@code -Dsqlite.leakTracking=true}) each connection records where it was opened and
+ * the cleaner logs that stack at WARNING when it has to step in.
+ *
+ * <p>Statement, cursor and blob handles obtained through {@link #handle()} do not keep the
+ * connection reachable. Use the connection in try-with-resources, or otherwise keep a
+ * reference, for as long as those handles are in use. Methods of this class that pass the
+ * handle to a native call keep {@code this} reachable until the call returns.
+ */
+public final class SqliteConnection implements AutoCloseable {
+    private static final System.Logger LOG = System.getLogger(SqliteConnection.class.getName());
+    private static final Cleaner CLEANER = Cleaner.create();
+    private static final Set<Handle> LIVE = ConcurrentHashMap.newKeySet();
+    private static final AtomicLong LEAKED = new AtomicLong();
+    private static volatile boolean leakTracking = Boolean.getBoolean("sqlite.leakTracking");
+
+    private final Handle handle;
+    private final Cleaner.Cleanable cleanable;
+
+    private SqliteConnection(long dbPtr, String path) {
+        this.handle = new Handle(dbPtr, path,
+                leakTracking ? new Throwable("SqliteConnection to " + path + " opened here") : null);
+        LIVE.add(handle);
+        this.cleanable = CLEANER.register(this, handle);
+    }
+
+    public static SqliteConnection open(String path) {
+        return open(path, OpenOptions.defaults());
+    }
+
+    public static SqliteConnection open(String path, OpenOptions options) {
+        return new SqliteConnection(SQLiteDemo.openDatabase(path, options), path);
+    }
+
+    /** The raw connection pointer for the static {@link SQLiteDemo} natives. */
+    public long handle() {
+        if (handle.closed.get()) {
+            throw new IllegalStateException("SqliteConnection is closed");
+        }
+        return handle.dbPtr;
+    }
+
+    public String path() {
+        return handle.path;
+    }
+
+    public boolean isClosed() {
+        return handle.closed.get();
+    }
+
+    public void exec(String sql) {
+        try {
+            SQLiteDemo.exec(handle(), sql);
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
+
+    /**
+     * Bytes of page cache held by this connection (SQLITE_DBSTATUS_CACHE_USED). Call it only
+     * from the thread using the connection; the value is also recorded for
+     * {@link #liveCacheMemory()}.
+     */
+    public long cacheMemoryUsed() {
+        try {
+            long used = SQLiteDemo.dbStatus(handle(), SQLiteDemo.SQLITE_DBSTATUS_CACHE_USED);
+            handle.cacheUsed = used;
+            return used;
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
+
+    @Override
+    public void close() {
+        handle.explicit = true;
+        cleanable.clean();
+    }
+
+    /** Records an allocation stack for connections opened from now on. */
+    public static void setLeakTracking(boolean enabled) {
+        leakTracking = enabled;
+    }
+
+    /** Native connections opened through this class and not yet closed. */
+    public static int liveConnections() {
+        return LIVE.size();
+    }
+
+    /** Connections that were closed by the cleaner because nobody called {@link #close()}. */
+    public static long leakedConnections() {
+        return LEAKED.get();
+    }
+
+    /**
+     * Page cache bytes across all live connections, as last recorded by {@link #cacheMemoryUsed()}
+     * on each connection's own thread. {@link SQLiteConnectionPool} records it every time a
+     * connection is handed back. Connections are never queried from the calling thread, since
+     * NOMUTEX connections may be in use by another thread at the same moment.
+     */
+    public static long liveCacheMemory() {
+        long total = 0;
+        for (Handle h : LIVE) {
+            total += h.cacheUsed;
+        }
+        return total;
+    }
+
+    /** Cleaner action; must not refer back to the SqliteConnection it cleans up after. */
+    private static final class Handle implements Runnable {
+        final long dbPtr;
+        final String path;
+        final Throwable openedAt;
+        final AtomicBoolean closed = new AtomicBoolean();
+        volatile boolean explicit;
+        volatile long cacheUsed;
+
+        Handle(long dbPtr, String path, Throwable openedAt) {
+            this.dbPtr = dbPtr;
+            this.path = path;
+            this.openedAt = openedAt;
+        }
+
+        @Override
+        public synchronized void run() {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            LIVE.remove(this);
+            if (!explicit) {
+                LEAKED.incrementAndGet();
+                if (openedAt != null) {
+                    LOG.log(System.Logger.Level.WARNING, "SqliteConnection to " + path + " was never closed", openedAt);
+                }
+            }
+            SQLiteDemo.closeDatabase(dbPtr);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.example;
+
+/**
+ * Cumulative execution statistics for one SQL text, across all connections.
+ * An execution runs from the first step after a reset until the statement is done,
+ * reset or released; its latency is the time spent inside sqlite3_step.
+ */
+public final class StatementStats {
+    static final int FIXED_FIELDS = 5;
+
+    private final String sql;
+    private final long executions;
+    private final long steps;
+    private final long rows;
+    private final long totalNanos;
+    private final long maxNanos;
+    private final LatencyHistogram histogram;
+
+    StatementStats(String sql, long executions, long steps, long rows, long totalNanos, long maxNanos,
+                   LatencyHistogram histogram) {
+        this.sql = sql;
+        this.executions = executions;
+        this.steps = steps;
+        this.rows = rows;
+        this.totalNanos = totalNanos;
+        this.maxNanos = maxNanos;
+        this.histogram = histogram;
+    }
+
+    static StatementStats read(int index, long[] scratch) {
+        String sql = SQLiteDemo.statementStatsSql(index);
+        SQLiteDemo.statementStats(index, scratch);
+        long[] counts = new long[LatencyHistogram.BUCKETS];
+        System.arraycopy(scratch, FIXED_FIELDS, counts, 0, counts.length);
+        return new StatementStats(sql, scratch[0], scratch[1], scratch[2], scratch[3], scratch[4],
+                new LatencyHistogram(counts));
+    }
+
+    /** Activity between {@code earlier} and this snapshot; maxNanos stays cumulative. */
+    public StatementStats minus(StatementStats earlier) {
+        return new StatementStats(sql, executions - earlier.executions, steps - earlier.steps,
+                rows - earlier.rows, totalNanos - earlier.totalNanos, maxNanos,
+                histogram.minus(earlier.histogram));
+    }
+
+    public String sql() {
+        return sql;
+    }
+
+    public long executions() {
+        return executions;
+    }
+
+    public long steps() {
+        return steps;
+    }
+
+    public long rows() {
+        return rows;
+    }
+
+    public long totalNanos() {
+        return totalNanos;
+    }
+
+    public long maxNanos() {
+        return maxNanos;
+    }
+
+    public long meanNanos() {
+        return executions == 0 ? 0 : totalNanos / executions;
+    }
+
+    /** Histogram percentile, capped at the largest latency actually observed. */
+    public long percentileNanos(double percentile) {
+        return Math.min(histogram.percentileNanos(percentile), maxNanos);
+    }
+
+    public LatencyHistogram histogram() {
+        return histogram;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("executions=%d rows=%d mean=%dns p50=%dns p99=%dns max=%dns  %s",
+                executions, rows, meanNanos(), percentileNanos(50), percentileNanos(99),
+                maxNanos, sql);
+    }
+}